@@ -1,4 +1,43 @@
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
 
 /**
  *
@@ -13,17 +52,48 @@ public class AVLTree {
 	public IAVLNode root;
 	private int length;
 	
+	// shared virtual node of this tree, used as the child of every leaf.
+	private final IAVLNode virtualNode = new VirtualNode();
+	
+	// the snapshot format of save() and load().
+	private static final int SNAPSHOT_MAGIC = 0x41564C54;
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int SNAPSHOT_HEADER = 3 * Integer.BYTES + Long.BYTES;
+	private static final int SNAPSHOT_BUFFER = 1 << 16;
+	private static final int MAX_VARINT = 10;
+	
+	// nodes with the smallest and largest keys, or null if the tree is empty.
+	private IAVLNode minNode;
+	private IAVLNode maxNode;
+	
+	// the augmented value of the subtrees, or null if the nodes are not augmented.
+	private Augmentation<Object> augmentation;
+	
+	// a hash index from the keys to the nodes of the tree, or null if the tree is not indexed.
+	private NodeIndex index;
+	
 	// creates an empty tree.
 	public AVLTree() {
-		this.root = new AVLNode();
+		this.root = this.virtualNode;
 		this.length = 0;
 	}
 	
+	// creates an empty tree whose nodes keep the augmented value of their subtrees.
+	@SuppressWarnings("unchecked")
+	public AVLTree(Augmentation<?> augmentation) {
+		this();
+		this.augmentation = (Augmentation<Object>) augmentation;
+	}
+	
 	// creates a tree with root node.
 	public AVLTree(IAVLNode root) {
 		this.root = root;
 		this.root.setParent(null);
 		this.length = this.root.getSize();
+		if (root.isRealNode()) {
+			this.minNode = min(root);
+			this.maxNode = max(root);
+		}
 	}
 	
   /**
@@ -48,8 +118,8 @@ public class AVLTree {
 	  // COMPLEXITY: O(log(n)).
 	  
 	  // finds node with key k.
-	  // treeSearch complexity: O(log(n)).
-	  IAVLNode x = treeSearch(k);
+	  // treeSearch complexity: O(log(n)). with the index: O(1) expected.
+	  IAVLNode x = this.index != null ? this.index.get(k) : treeSearch(k);
 	  
 	  return x == null ? null : x.getValue();
   }
@@ -64,34 +134,64 @@ public class AVLTree {
    * Returns -1 if an item with key k already exists in the tree.
    */
    public int insert(int k, String i) {
-	   // COMPLEXITY: O(log(n))
+	   // COMPLEXITY: O(log(n)).
+	   // a key larger than the max (or smaller than the min) is searched in O(1), from the max (min) node.
+	   
+	   // with the index, an existing key is found without walking the tree.
+	   if (this.index != null && this.index.get(k) != null) {
+		   return -1;
+	   }
+	   
+	   long start = Metrics.start();
 	   
 	   // create new node.
 	   IAVLNode node = new AVLNode(k, i);
 	   
-	   // insert node as root.
-	   if (empty()) {
-		   this.root = node;
-		   this.length++;
-		   return 0;
-	   }
-	   
-	   // regular BST insert.
-	   // treeInsert complexity: O(log(n)).
-	   int result = treeInsert(this.getRoot(), node);
+	   // insertNode complexity: O(log(n)).
+	   int result = insertNode(node, searchStart(k));
+	   Metrics.finish("insert", k, this.length, start, null);
+	   return result;
+   }
+   
+   /**
+    * public int insertAll(int[] keys, String[] values)
+    *
+    * Inserts the items (keys[i], values[i]) to the AVL tree.
+    * The items are sorted first, and each insertion starts from the node inserted before it,
+    * so the common part of the search paths is not walked again.
+    * The first insertion starts like insert().
+    * Returns the total number of re-balancing operations, counted like insert().
+    * Items whose key already exists in the tree (or earlier in the batch) are not inserted.
+    *
+    * precondition: keys.length == values.length.
+    */
+   public int insertAll(int[] keys, String[] values)
+   {
+	   // COMPLEXITY: O(m*log(m)) for the sort, and O(log(n)) per item for the rebalance.
+	   // the search of each item starts from the item before it, see insert().
 	   
-	   // node already exists in tree.
-	   if (result == -1) {
-		   return -1;
-	   }
+	   long start = Metrics.start();
 	   
-	   this.length++;
+	   // sortPairs complexity: O(m*log(m)).
+	   long[] pairs = sortPairs(keys);
 	   
-	   // rebalance after insertion.
-	   // rebalance complexity: O(log(n)).
-	   return rebalance(node);
+	   int counter = 0;
+	   IAVLNode finger = null;
+	   for (long pair : pairs) {
+		   IAVLNode node = new AVLNode((int) (pair >> 32), values[(int) pair]);
+		   
+		   // fingerStart complexity: O(log(n)).
+		   int result = insertNode(node, finger == null ? searchStart(node.getKey()) : fingerStart(finger, node.getKey()));
+		   if (result != -1) {
+			   counter += result;
+			   finger = node;
+		   }
+	   }
+	   Metrics.finish("insertAll", pairs.length == 0 ? 0 : (int) (pairs[0] >> 32), this.length, start,
+			   Metrics.batchLatencies());
+	   return counter;
    }
-
+   
 
   /**
    * public int delete(int k)
@@ -104,28 +204,125 @@ public class AVLTree {
    */
    public int delete(int k)
    {
-	   // COMPLEXITY: O(log(n)).
+	   // COMPLEXITY: O(log(n)). O(1) if k is outside of the keys of the tree.
+	   
+	   long start = Metrics.start();
 	   
-	   // find node to delete.
-	   IAVLNode node = treeSearch(k);
+	   // find node to delete in the index, or in the tree if k is between the min and max keys.
+	   // treeSearch complexity: O(log(n)). index complexity: O(1) expected.
+	   IAVLNode node;
+	   if (this.index != null) {
+		   node = this.index.get(k);
+	   }
+	   else if (empty() || k < this.minNode.getKey() || k > this.maxNode.getKey()) {
+		   node = null;
+	   }
+	   else {
+		   node = treeSearch(k);
+	   }
 	   
 	   // node not found in tree.
-	   if (node == null) {
+	   if (node == null || node.getKey() != k) {
+		   Metrics.finish("delete", k, this.length, start, null);
 		   return -1;
 	   }
 	   
-	   // regular BST delete
-	   // treeDelete worst case complexity (when finding successor): O(log(node.height)).
-	   node = treeDelete(node);
-	   this.length--;
+	   // deleteNode complexity: O(log(n)).
+	   int result = deleteNode(node);
+	   Metrics.finish("delete", k, this.length, start, null);
+	   return result;
+   }
+   
+   /**
+    * public int deleteAll(int[] keys)
+    *
+    * Deletes the items with the given keys from the tree, if they are there.
+    * The keys are sorted first, and each search starts from the successor of the node deleted before it,
+    * so the common part of the search paths is not walked again.
+    * Returns the total number of re-balancing operations, counted like delete().
+    * Keys that are not in the tree are ignored.
+    */
+   public int deleteAll(int[] keys)
+   {
+	   // COMPLEXITY: O(m*log(m)) for the sort, and O(log(n)) per key for the rebalance.
+	   // the search of each key starts from the key before it, see insert().
 	   
-	   if (node == null) {
-		   return 0;
+	   long start = Metrics.start();
+	   
+	   // sortPairs complexity: O(m*log(m)).
+	   long[] pairs = sortPairs(keys);
+	   
+	   int counter = 0;
+	   IAVLNode finger = null;
+	   for (long pair : pairs) {
+		   if (this.empty()) {
+			   break;
+		   }
+		   int k = (int) (pair >> 32);
+		   
+		   // fingerStart complexity: O(log(n)).
+		   IAVLNode node = treePosition(finger == null ? this.getRoot() : fingerStart(finger, k), k);
+		   if (node.getKey() != k) {
+			   // k is not in the tree, the next search starts where this one ended.
+			   finger = node;
+			   continue;
+		   }
+		   
+		   // the successor is not removed from the tree by deleteNode (it might only move).
+		   finger = successor(node);
+		   counter += deleteNode(node);
 	   }
+	   Metrics.finish("deleteAll", pairs.length == 0 ? 0 : (int) (pairs[0] >> 32), this.length, start,
+			   Metrics.batchLatencies());
+	   return counter;
+   }
+   
+   /**
+    * public String pollMin()
+    *
+    * Deletes the item with the smallest key in the tree and returns its info,
+    * or null if the tree is empty.
+    */
+   public String pollMin()
+   {
+	   // COMPLEXITY: O(log(n)). finding the node is O(1).
 	   
-	   // rebalance tree after deletion.
-	   // delRebalance complexity: O(log(n)).
-	   return delRebalance(node);
+	   if (this.empty()) {
+		   return null;
+	   }
+	   
+	   long start = Metrics.start();
+	   IAVLNode node = this.minNode;
+	   
+	   // deleteNode complexity: O(log(n)).
+	   deleteNode(node);
+	   Metrics.finish("pollMin", node.getKey(), this.length, start, null);
+	   
+	   return node.getValue();
+   }
+   
+   /**
+    * public String pollMax()
+    *
+    * Deletes the item with the largest key in the tree and returns its info,
+    * or null if the tree is empty.
+    */
+   public String pollMax()
+   {
+	   // COMPLEXITY: O(log(n)). finding the node is O(1).
+	   
+	   if (this.empty()) {
+		   return null;
+	   }
+	   
+	   long start = Metrics.start();
+	   IAVLNode node = this.maxNode;
+	   
+	   // deleteNode complexity: O(log(n)).
+	   deleteNode(node);
+	   Metrics.finish("pollMax", node.getKey(), this.length, start, null);
+	   
+	   return node.getValue();
    }
 
    /**
@@ -136,17 +333,14 @@ public class AVLTree {
     */
    public String min()
    {
-	   // COMPLEXITY: O(log(n)).
+	   // COMPLEXITY: O(1).
 	   
 	   if (this.empty()) {
 		   return null;
 	   }
 	   
-	   // find node with smallest key.
-	   // min complexity: O(log(n)) (worst case min is with depth=height of tree).
-	   IAVLNode minNode = min(this.getRoot());
-	   
-	   return minNode.getValue();
+	   // the node with smallest key is kept up to date by insert, delete, join and split.
+	   return this.minNode.getValue();
    }
 
    /**
@@ -157,17 +351,14 @@ public class AVLTree {
     */
    public String max()
    {
-	   // COMPLEXITY: O(log(n)).
+	   // COMPLEXITY: O(1).
 	   
 	   if (this.empty()) {
 		   return null;
 	   }
 	   
-	   // find node with largest key.
-	   // max complexity: O(log(n)) (worst case max is leaf with depth=height of tree).
-	   IAVLNode maxNode = max(this.getRoot());
-	   
-	   return maxNode.getValue();
+	   // the node with largest key is kept up to date by insert, delete, join and split.
+	   return this.maxNode.getValue();
    }
 
   /**
@@ -180,18 +371,10 @@ public class AVLTree {
   {
 	  // COMPLEXITY: O(n).
 	  
-	  IAVLNode[] array = new IAVLNode[size()];
-	  int[] index = new int[1];
-	  index[0] = 0;
-	  
-	  // inOrder complexity: O(n). We visit all nodes in the tree.
-	  inOrder(getRoot(), array, index);
-	  
-	  // copy n keys to array. complexity: O(n).
 	  int[] keys = new int[size()];
-	  for (int i = 0; i < keys.length; i++) {
-		  keys[i] = array[i].getKey();
-	  }
+	  
+	  // exportItems complexity: O(n). We visit all nodes in the tree.
+	  exportItems(0, keys, null, 0, keys.length);
 	  
 	  return keys;
   }
@@ -207,20 +390,98 @@ public class AVLTree {
   {
 	  // COMPLEXITY: O(n).
 	  
-	  IAVLNode[] array = new IAVLNode[size()];
-	  int[] index = new int[1];
-	  index[0] = 0;
+	  String[] values = new String[size()];
 	  
-	  // inOrder complexity: O(n). We visit all nodes in the tree.
-	  inOrder(getRoot(), array, index);
+	  // exportItems complexity: O(n). We visit all nodes in the tree.
+	  exportItems(0, null, values, 0, values.length);
 	  
-	  // copy n values to array. complexity: O(n).
-	  String[] values = new String[size()];
-	  for (int i = 0; i < values.length; i++) {
-		  values[i] = array[i].getValue();
+	  return values;
+  }
+  
+  /**
+   * public int exportItems(int from, int[] keys, String[] values, int offset, int max)
+   *
+   * Writes the items at positions from, from+1, ... (in increasing order of keys, starting at 0)
+   * into keys and values, starting at index offset. At most max items are written.
+   * keys or values may be null, if only the other one is needed.
+   * Returns the number of items written, so the next chunk starts at from + the returned value.
+   * The tree must not be changed between the chunks.
+   */
+  public int exportItems(int from, int[] keys, String[] values, int offset, int max)
+  {
+	  // COMPLEXITY: O(log(n) + max).
+	  
+	  IAVLNode x = exportStart(from);
+	  int count = 0;
+	  // in order scan using the parent links, O(1) amortized per node.
+	  while (count < max && x != null) {
+		  if (keys != null) {
+			  keys[offset + count] = x.getKey();
+		  }
+		  if (values != null) {
+			  values[offset + count] = x.getValue();
+		  }
+		  count++;
+		  x = successor(x);
 	  }
 	  
-	  return values;
+	  return count;
+  }
+  
+  /**
+   * public int exportKeys(int from, IntBuffer keys, int max)
+   *
+   * Writes the keys at positions from, from+1, ... (in increasing order, starting at 0)
+   * into keys, at its current position. At most max keys are written, and no more than keys.remaining().
+   * Returns the number of keys written.
+   */
+  public int exportKeys(int from, IntBuffer keys, int max)
+  {
+	  // COMPLEXITY: O(log(n) + max).
+	  
+	  IAVLNode x = exportStart(from);
+	  int count = 0;
+	  while (count < max && x != null && keys.hasRemaining()) {
+		  keys.put(x.getKey());
+		  count++;
+		  x = successor(x);
+	  }
+	  
+	  return count;
+  }
+  
+  /**
+   * public int exportItems(int from, ByteBuffer out, int max)
+   *
+   * Writes the items at positions from, from+1, ... (in increasing order of keys, starting at 0)
+   * into out, at its current position. Each item is written as the key (int), the length of
+   * the info in bytes (int, -1 for null) and the info in UTF-8.
+   * At most max items are written, and only items that fit completely in out.remaining().
+   * Returns the number of items written.
+   */
+  public int exportItems(int from, ByteBuffer out, int max)
+  {
+	  // COMPLEXITY: O(log(n) + max + the length of the written infos).
+	  
+	  IAVLNode x = exportStart(from);
+	  int count = 0;
+	  while (count < max && x != null) {
+		  String info = x.getValue();
+		  byte[] bytes = info == null ? null : info.getBytes(StandardCharsets.UTF_8);
+		  int length = bytes == null ? 0 : bytes.length;
+		  if (out.remaining() < 2 * Integer.BYTES + length) {
+			  break;
+		  }
+		  out.putInt(x.getKey());
+		  out.putInt(bytes == null ? -1 : length);
+		  if (bytes != null) {
+			  out.put(bytes);
+		  }
+		  count++;
+		  x = successor(x);
+	  }
+	  
+	  return count;
   }
 
    /**
@@ -247,44 +508,130 @@ public class AVLTree {
 	   return this.root;
    }
    
+   /**
+    * public int rank(int k)
+    *
+    * Returns the number of keys in the tree that are smaller than or equal to k.
+    * If k is in the tree, this is its position in the sorted order (starting at 1).
+    */
+   public int rank(int k)
+   {
+	   // COMPLEXITY: O(log(n)).
+	   
+	   int rank = 0;
+	   IAVLNode x = getRoot();
+	   while (x.isRealNode()) {
+		   if (x.getKey() <= k) {
+			   // x and its left subtree are all smaller than or equal to k.
+			   rank += x.getLeft().getSize() + 1;
+			   if (x.getKey() == k) {
+				   return rank;
+			   }
+			   x = x.getRight();
+		   }
+		   else {
+			   x = x.getLeft();
+		   }
+	   }
+	   return rank;
+   }
+   
+   /**
+    * public int select(int i)
+    *
+    * Returns the key of the i'th smallest item in the tree (starting at 1).
+    * Throws IndexOutOfBoundsException if i is not between 1 and size(), since every int can be a key.
+    */
+   public int select(int i)
+   {
+	   // COMPLEXITY: O(log(n)).
+	   
+	   // treeSelect complexity: O(log(n)).
+	   IAVLNode x = treeSelect(i);
+	   if (x == null) {
+		   throw new IndexOutOfBoundsException("position " + i + " is not between 1 and " + size());
+	   }
+	   
+	   return x.getKey();
+   }
+   
    /**
     * public AVLTree[] split(int x)
     *
     * splits the tree into 2 trees according to the key x. 
     * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+    * The nodes of the tree are reused by t1 and t2, so the tree should not be used after the split.
     * 
 	* precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
     * postcondition: none
     */   
    public AVLTree[] split(int x)
    {	   
-	   // NEED TO FINISH.
-	   
+	   // COMPLEXITY: O(log(n)), and O(min(|t1|, |t2|)) expected more if the tree is indexed.
+	   // each join costs O(|rank difference| + 1), and the ranks on the path to the root
+	   // are increasing, so the sum of all joins is O(log(n)).
 	   
+	   long start = Metrics.start();
+	   int size = this.length;
 	   IAVLNode xNode = treeSearch(x);
 	   
-	   IAVLNode xLeft = xNode.getLeft();
-	   IAVLNode xRight = xNode.getRight();
+	   // the max node of t1 and the min node of t2.
+	   // complexity: O(log(n)).
+	   IAVLNode xPredecessor = predecessor(xNode);
+	   IAVLNode xSuccessor = successor(xNode);
+	   
+	   // treeSplit complexity: O(log(n)).
+	   AVLTree[] trees = treeSplit(x, xNode.getLeft(), xNode.getRight(), xNode.getParent());
+	   AVLTree leftTree = trees[0];
+	   AVLTree rightTree = trees[1];
 	   
-	   AVLTree leftTree = new AVLTree(xLeft);
-	   AVLTree rightTree = new AVLTree(xRight);
+	   // keys(t1) are the keys smaller than x, so t1 has the min node of the tree (if it is not empty).
+	   leftTree.minNode = leftTree.empty() ? null : this.minNode;
+	   leftTree.maxNode = xPredecessor;
+	   rightTree.minNode = xSuccessor;
+	   rightTree.maxNode = rightTree.empty() ? null : this.maxNode;
+	   leftTree.augmentation = this.augmentation;
+	   rightTree.augmentation = this.augmentation;
+	   
+	   // splitIndex complexity: O(min(|t1|, |t2|) + 1) expected.
+	   if (this.index != null) {
+		   splitIndex(x, leftTree, rightTree);
+		   this.index = null;
+	   }
 	   
-	   IAVLNode parent = xNode.getParent();
+	   Metrics.finish("split", x, size, start, Metrics.splitLatencies());
+	   return trees;
+   }
+   
+   // splits the tree by the key x, starting from the subtrees left < x < right and going up from parent.
+   // returns [t1, t2] with keys(t1) < x < keys(t2), without their min and max nodes.
+   // complexity: O(log(n)).
+   private AVLTree[] treeSplit(int x, IAVLNode left, IAVLNode right, IAVLNode parent)
+   {
+	   AVLTree leftTree = subtree(left);
+	   AVLTree rightTree = subtree(right);
+	   // one temporary tree is reused for all the subtrees on the path.
+	   AVLTree tempTree = new AVLTree();
 	   
 	   while (parent != null) {
 		   IAVLNode next = parent.getParent();
-		   if (parent.getKey() < xNode.getKey()) {
-			  AVLTree tempTree = new AVLTree(parent.getLeft());
-			  IAVLNode joinNode = new AVLNode(parent.getKey(), parent.getValue());
-			  leftTree.join(joinNode, tempTree);
+		   if (parent.getKey() < x) {
+			   tempTree.setRoot(parent.getLeft());
+			   // parent is used as the join node.
+			   detach(parent);
+			   leftTree.treeJoin(parent, tempTree);
 		   }
 		   else {
-			   AVLTree tempTree = new AVLTree(parent.getRight());
-			   IAVLNode joinNode = new AVLNode(parent.getKey(), parent.getValue());
-			   tempTree.join(joinNode, rightTree);
+			   tempTree.setRoot(parent.getRight());
+			   // parent is used as the join node.
+			   detach(parent);
+			   tempTree.treeJoin(parent, rightTree);
+			   
+			   // the joined tree is now the right tree, and the old right tree is reused.
+			   AVLTree swap = rightTree;
 			   rightTree = tempTree;
+			   tempTree = swap;
 		   }
-		   xNode = parent;
 		   parent = next;
 	   }
 	   
@@ -296,14 +643,55 @@ public class AVLTree {
     *
     * joins t and x with the tree. 	
     * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+	*
+	* Throws IllegalArgumentException if t and the tree have different augmentations.
 	*
 	* precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
     * postcondition: none
     */   
    public int join(IAVLNode x, AVLTree t)
    {
-	   // COMPLEXITY: O(|tree.rank - t.rank| + 1).
+	   // COMPLEXITY: O(|tree.rank - t.rank| + 1), and if the tree is indexed, O(min(|tree|, |t|))
+	   // expected more when t is indexed too, or O(|t|) expected more when it is not.
+	   
+	   checkAugmentation(t);
+	   
+	   long start = Metrics.start();
 	   
+	   // find the min and max nodes of the joined tree before the trees are changed.
+	   IAVLNode joinedMin = x;
+	   IAVLNode joinedMax = x;
+	   if (!this.empty()) {
+		   joinedMin = this.minNode.getKey() < joinedMin.getKey() ? this.minNode : joinedMin;
+		   joinedMax = this.maxNode.getKey() > joinedMax.getKey() ? this.maxNode : joinedMax;
+	   }
+	   if (!t.empty()) {
+		   joinedMin = t.minNode.getKey() < joinedMin.getKey() ? t.minNode : joinedMin;
+		   joinedMax = t.maxNode.getKey() > joinedMax.getKey() ? t.maxNode : joinedMax;
+	   }
+	   
+	   // the nodes of the smaller tree are added to the index of the other one.
+	   // joinIndex complexity: O(min(|tree|, |t|) + 1) expected if both trees are indexed,
+	   // O(|t| + 1) expected if only this tree is.
+	   NodeIndex joinedIndex = joinIndex(x, t);
+	   
+	   // treeJoin complexity: O(|tree.rank - t.rank| + 1).
+	   int returnValue = treeJoin(x, t);
+	   
+	   this.minNode = joinedMin;
+	   this.maxNode = joinedMax;
+	   this.index = joinedIndex;
+	   // the nodes of t are now in the tree, so t can not search its index.
+	   t.index = null;
+	   
+	   Metrics.finish("join", x.getKey(), this.length, start, Metrics.joinLatencies());
+	   return returnValue;
+   }
+   
+   // joins t and x with the tree, without updating the min and max nodes.
+   // complexity: O(|tree.rank - t.rank| + 1).
+   private int treeJoin(IAVLNode x, AVLTree t)
+   {
 	   int returnValue = Math.abs(this.getRank() - t.getRank())+1;
 	   
 	   //determine if t's nodes are larger or smaller than x
@@ -311,6 +699,7 @@ public class AVLTree {
 		   if(t.getRoot().getHeight() < this.getRoot().getHeight()) { //rank(t) < rank(this)
 			   IAVLNode tRoot = t.getRoot();
 			   IAVLNode joined = this.getRoot();
+			   IAVLNode joinedParent = null;
 			   int tRootHeight = tRoot.getHeight();
 			   if(t.empty()) { //insert x in this 
 				   this.treeInsert(this.getRoot(),x);
@@ -321,16 +710,20 @@ public class AVLTree {
 				   x.setHeight(tRoot.getHeight()+1);
 				   //find node in this (its most left branch) with the same height as tRoot (or one less)
 				   while(joined.isRealNode() && joined.getHeight() != tRootHeight && joined.getHeight() != tRootHeight-1) {
+					   joinedParent = joined;
 					   joined = joined.getLeft();
 				   }
 				   //insert x between joined and its parent
-				   joined.getParent().setLeft(x);
-				   x.setParent(joined.getParent());
-				   joined.setParent(x);
+				   joinedParent.setLeft(x);
+				   x.setParent(joinedParent);
+				   if(joined.isRealNode()) {
+					   joined.setParent(x);
+				   }
 				   x.setRight(joined);
 			   }
 			   //Do rebalancing from x
 			   this.rebalance(x);
+			   this.updateSizes(x);
 			   this.length += t.size()+1;
 			   return returnValue;
 		   }
@@ -349,6 +742,7 @@ public class AVLTree {
 					   //then insert x
 					   this.treeInsert(this.getRoot(),x);
 					   this.rebalance(x);
+					   this.updateSizes(x);
 					   return returnValue;
 				   }
 			   }
@@ -357,6 +751,7 @@ public class AVLTree {
 				   //thus, after we finish we will change the root of this to the root of t
 				   IAVLNode root = this.getRoot();
 				   IAVLNode joined = t.getRoot();
+				   IAVLNode joinedParent = null;
 				   int rootHeight = root.getHeight();
 				   
 				   root.setParent(x);
@@ -364,18 +759,22 @@ public class AVLTree {
 				   x.setHeight(root.getHeight()+1);
 				   //find node in t (its most right branch) with the same height as root (or one less)
 				   while(joined.isRealNode() && joined.getHeight() != rootHeight && joined.getHeight() != rootHeight-1) {
+					   joinedParent = joined;
 					   joined = joined.getRight();
 				   }
-				   if(joined.getParent() == null) {//then add x as the root
+				   if(joinedParent == null) {//then add x as the root
 					   x.setLeft(joined);
 					   joined.setParent(x);
+					   x.setParent(null);
 					   this.root = x;
 					   this.length += t.length+1;  
 				   }else {
 					   //insert x between joined and its parent
-					   joined.getParent().setRight(x);
-					   x.setParent(joined.getParent());
-					   joined.setParent(x);
+					   joinedParent.setRight(x);
+					   x.setParent(joinedParent);
+					   if(joined.isRealNode()) {
+						   joined.setParent(x);
+					   }
 					   x.setLeft(joined);
 					   
 					   this.root = t.getRoot();
@@ -383,6 +782,7 @@ public class AVLTree {
 					   
 				   }
 				   this.rebalance(x);
+				   this.updateSizes(x);
 			   }
 			   return returnValue;
 		   }
@@ -392,6 +792,7 @@ public class AVLTree {
 		   if(t.getRoot().getHeight() < this.getRoot().getHeight()) { //rank(t) < rank(this)
 			   IAVLNode tRoot = t.getRoot();
 			   IAVLNode joined = this.getRoot();
+			   IAVLNode joinedParent = null;
 			   int tRootHeight = tRoot.getHeight();
 			   if(t.empty()) { //insert x in this 
 				   this.treeInsert(this.getRoot(),x);
@@ -401,17 +802,21 @@ public class AVLTree {
 				   x.setRight(tRoot);
 				   x.setHeight(tRoot.getHeight()+1);
 				   //find node in this (its most right branch) with the same height as tRoot (or one less)
-				   while(joined.isRealNode() && (joined.getHeight() != tRootHeight || joined.getHeight() != tRootHeight-1)) {
+				   while(joined.isRealNode() && joined.getHeight() != tRootHeight && joined.getHeight() != tRootHeight-1) {
+					   joinedParent = joined;
 					   joined = joined.getRight();
 				   }
 				   //insert x between joined and its parent
-				   joined.getParent().setRight(x);
-				   x.setParent(joined.getParent());
-				   joined.setParent(x);
+				   joinedParent.setRight(x);
+				   x.setParent(joinedParent);
+				   if(joined.isRealNode()) {
+					   joined.setParent(x);
+				   }
 				   x.setLeft(joined);
 			   }
 			   //Do rebalancing from x
 			   this.rebalance(x);
+			   this.updateSizes(x);
 			   this.length += t.size()+1;
 			   return returnValue;
 		   }
@@ -430,6 +835,7 @@ public class AVLTree {
 					   //then insert x
 					   this.treeInsert(this.getRoot(),x);
 					   this.rebalance(x);
+					   this.updateSizes(x);
 					   return returnValue;
 				   }
 			   }
@@ -438,31 +844,37 @@ public class AVLTree {
 				   //thus, after we finish we will change the root of this to the root of t
 				   IAVLNode root = this.getRoot();
 				   IAVLNode joined = t.getRoot();
+				   IAVLNode joinedParent = null;
 				   int rootHeight = root.getHeight();
 				   
 				   root.setParent(x);
 				   x.setLeft(root);
 				   x.setHeight(root.getHeight()+1);
 				   //find node in t (its most right branch) with the same height as root (or one less)
-				   while(joined.isRealNode() && (joined.getHeight() != rootHeight || joined.getHeight() != rootHeight-1)) {
+				   while(joined.isRealNode() && joined.getHeight() != rootHeight && joined.getHeight() != rootHeight-1) {
+					   joinedParent = joined;
 					   joined = joined.getLeft();
 				   }
-				   if(joined.getParent() == null) {
+				   if(joinedParent == null) {
 					   x.setRight(joined);
 					   joined.setParent(x);
+					   x.setParent(null);
 					   this.root = x;
 					   this.length += t.length+1;
 				   }else {
 					   //insert x between joined and its parent
-					   joined.getParent().setLeft(x);
-					   x.setParent(joined.getParent());
-					   joined.setParent(x);
+					   joinedParent.setLeft(x);
+					   x.setParent(joinedParent);
+					   if(joined.isRealNode()) {
+						   joined.setParent(x);
+					   }
 					   x.setRight(joined);
 				   
 					   this.root = t.getRoot();
 					   this.length += t.length+1;
 				   }
 				   this.rebalance(x);
+				   this.updateSizes(x);
 			   }
 			   return returnValue;
 		   }
@@ -470,445 +882,1377 @@ public class AVLTree {
 	   
    }
    
-   //================================================================== ||
-   //==========================OUR_FUNCTIONS=========================== ||
-   //================================================================== \/
-   
-   // finds node with key k.
-   // returns null if there is no such key in the tree.
-   // complexity: O(log(n)).
-   private IAVLNode treeSearch(int k) {	   
- 	  IAVLNode x = getRoot();
- 	  while (x != null) {
- 		  if (x.getKey() == k) {
- 			  return x;
- 		  }
- 		  else if (x.getKey() > k) {
- 			  x = x.getLeft();
- 		  }
- 		  else {
- 			  x = x.getRight();
- 		  }
- 	  }
- 	  return null;
+   /**
+    * public static AVLTree fromSorted(int[] keys, String[] values)
+    *
+    * Creates a balanced tree with the items (keys[i], values[i]), without inserting them one by one.
+    *
+    * precondition: keys are sorted in increasing order, and distinct. keys.length == values.length.
+    * postcondition: none
+    */
+   public static AVLTree fromSorted(int[] keys, String[] values)
+   {
+	   // COMPLEXITY: O(n).
+	   
+	   AVLTree tree = new AVLTree();
+	   
+	   // buildTree complexity: O(n). each item becomes one node.
+	   tree.setBuiltRoot(tree.buildTree(keys, values, 0, keys.length));
+	   
+	   return tree;
    }
    
-   // insert the node in the correct position.
-   // complexity: O(log(n)).
-   private int treeInsert(IAVLNode startNode, IAVLNode newNode) {
-	   IAVLNode parent = treePosition(startNode, newNode.getKey());
+   /**
+    * public static AVLTree fromUnsorted(int[] keys, String[] values)
+    *
+    * Creates a balanced tree with the items (keys[i], values[i]), in any order.
+    * The items are sorted in parallel and the tree is built in parallel, with the common ForkJoinPool.
+    * If a key appears more than once, only its first item is kept (like insert).
+    *
+    * precondition: keys.length == values.length.
+    * postcondition: none
+    */
+   public static AVLTree fromUnsorted(int[] keys, String[] values)
+   {
+	   // COMPLEXITY: O(n*log(n)) work for the sort, O(n) work for the build.
 	   
-	   // node already exists.
-	   if (newNode.getKey() == parent.getKey()) {
-		   return -1;
-	   }
+	   // sortPairs complexity: O(n*log(n)).
+	   long[] pairs = sortPairs(keys);
 	   
-	   // insert the node.
-	   newNode.setParent(parent);
-	   if (newNode.getKey() < parent.getKey()) {
-		   parent.setLeft(newNode);
-	   }
-	   else {
-		   parent.setRight(newNode);
+	   // copy the items in sorted order, without duplicated keys.
+	   int[] sortedKeys = new int[keys.length];
+	   String[] sortedValues = new String[keys.length];
+	   int n = 0;
+	   for (int i = 0; i < pairs.length; i++) {
+		   int key = (int) (pairs[i] >> 32);
+		   if (n > 0 && sortedKeys[n - 1] == key) {
+			   continue;
+		   }
+		   sortedKeys[n] = key;
+		   sortedValues[n] = values[(int) pairs[i]];
+		   n++;
 	   }
-	   return 1;
+	   
+	   AVLTree tree = new AVLTree();
+	   
+	   // the subtrees are built in parallel, each task is O(size of its subtree).
+	   tree.setBuiltRoot(ForkJoinPool.commonPool().invoke(tree.new BuildTask(sortedKeys, sortedValues, 0, n)));
+	   
+	   return tree;
    }
    
-   // find the position of the parent of the node to be inserted.
-   // complexity: O(log(n)).
-   private IAVLNode treePosition(IAVLNode startNode, int key) {
-	   
-	   IAVLNode parent = null;
-	   while (startNode.isRealNode()) {
-		   parent = startNode;
-		   if (key == startNode.getKey()) {
-			   return startNode;
-		   }
-		   else if (key < startNode.getKey() ) {
-			   startNode = startNode.getLeft();
-		   }
-		   else {
-			   startNode = startNode.getRight();
-		   }
-	   }
-	   return parent;
-   }
-   
-   // return the parent of the node to be deleted.
-   // post the tree without the node to be deleted.
-   // complexity: O(log(node.height)).
-   private IAVLNode treeDelete(IAVLNode node) {
-	   IAVLNode parent = node.getParent();
+   /**
+    * public void save(Path file)
+    *
+    * Writes the items of the tree to file, which is overwritten.
+    * The format is a header (magic, version, number of items and the length of the key section),
+    * the keys in increasing order as varint deltas, and the infos as varint (length + 1, 0 for null)
+    * followed by their UTF-8 bytes.
+    */
+   public void save(Path file) throws IOException
+   {
+	   // COMPLEXITY: O(n + the length of the infos).
 	   
-	   // node to delete is a leaf.
-	   if (node.isLeaf()) {
-		   if (parent == null) {
-			   this.root = null;
+	   try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			   StandardOpenOption.TRUNCATE_EXISTING)) {
+		   ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER);
+		   
+		   // the length of the key section is written when it is known.
+		   buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(size()).putLong(0);
+		   
+		   // first pass: the keys. the first delta is from Integer.MIN_VALUE, so all deltas are positive.
+		   long previous = Integer.MIN_VALUE;
+		   for (IAVLNode x = this.minNode; x != null; x = successor(x)) {
+			   if (buffer.remaining() < MAX_VARINT) {
+				   flush(channel, buffer);
+			   }
+			   writeVarint(buffer, x.getKey() - previous);
+			   previous = x.getKey();
 		   }
-		   else {
-			   if (parent.getKey() > node.getKey()) {
-				   parent.setLeft(new AVLNode());
-				   parent.getLeft().setParent(parent);
+		   flush(channel, buffer);
+		   long keyBytes = channel.position() - SNAPSHOT_HEADER;
+		   
+		   // second pass: the infos.
+		   for (IAVLNode x = this.minNode; x != null; x = successor(x)) {
+			   byte[] bytes = x.getValue() == null ? null : x.getValue().getBytes(StandardCharsets.UTF_8);
+			   if (buffer.remaining() < MAX_VARINT) {
+				   flush(channel, buffer);
 			   }
-			   else { 
-				   parent.setRight(new AVLNode());
-				   parent.getRight().setParent(parent);
+			   writeVarint(buffer, bytes == null ? 0 : bytes.length + 1L);
+			   if (bytes == null) {
+				   continue;
 			   }
-		   }
-		   return parent;
-	   }
-	   
-	   // node to delete has one child.
-	   else if (node.isUnary() != null) {
-		   IAVLNode child = node.isUnary();
-		   if (parent == null) {
-			   this.root = child;
-			   child.setParent(null);
-		   }
-		   else {
-			   if (parent.getKey() > node.getKey()) {
-				   parent.setLeft(child);
+			   if (bytes.length > buffer.remaining()) {
+				   flush(channel, buffer);
+			   }
+			   if (bytes.length > buffer.remaining()) {
+				   // larger than the buffer, written directly.
+				   ByteBuffer large = ByteBuffer.wrap(bytes);
+				   while (large.hasRemaining()) {
+					   channel.write(large);
+				   }
 			   }
 			   else {
-				   parent.setRight(child);
+				   buffer.put(bytes);
 			   }
-			   child.setParent(parent);
 		   }
-		   return parent;
+		   flush(channel, buffer);
+		   
+		   buffer.putLong(keyBytes).flip();
+		   channel.write(buffer, SNAPSHOT_HEADER - Long.BYTES);
 	   }
+   }
+   
+   /**
+    * public static AVLTree load(Path file)
+    *
+    * Reads a tree that was written by save(). The file is memory-mapped, the items are decoded
+    * into sorted arrays and the tree is built from them like fromSorted(), without insert().
+    * Throws IOException if the file is not a snapshot, is larger than 2GB, or is corrupted:
+    * truncated, with keys that are not increasing, or with sections of the wrong length.
+    */
+   public static AVLTree load(Path file) throws IOException
+   {
+	   // COMPLEXITY: O(n + the length of the infos).
 	   
-	   // node to delete has two children.
-	   else {
-		   // finding successor takes O(node.height);
-		   IAVLNode successor = min(node.getRight());
-		   
-		   // successor is right child of node to delete.
-		   if (successor == node.getRight()) {
-			   successor.setLeft(node.getLeft());
-			   successor.getLeft().setParent(successor);
-			   if (parent == null) {
-				   this.root = successor;
-				   successor.setParent(null);
-			   }
-			   else {
-				   successor.setParent(parent);
-				   if (parent.getKey() > node.getKey()) {
-					   parent.setLeft(successor);
-				   }
-				   else {
-					   parent.setRight(successor);
-				   }
-			   }
-			   successor.setHeight(node.getHeight());
-			   return successor;
+	   try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		   if (channel.size() > Integer.MAX_VALUE) {
+			   throw new IOException("snapshot is too large to be mapped: " + file);
+		   }
+		   ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		   if (data.remaining() < SNAPSHOT_HEADER || data.getInt() != SNAPSHOT_MAGIC || data.getInt() != SNAPSHOT_VERSION) {
+			   throw new IOException("not an AVLTree snapshot: " + file);
+		   }
+		   int n = data.getInt();
+		   long keyBytes = data.getLong();
+		   // every key takes at least one byte, so n is checked before the arrays are allocated.
+		   if (n < 0 || keyBytes < n || keyBytes > data.remaining()) {
+			   throw new IOException("corrupted AVLTree snapshot: " + file);
 		   }
 		   
-		   // successor is a child in the right subtree.
-		   else {
-			   IAVLNode sucParent = successor.getParent();
-			   if (successor.isLeaf()) {
-				   sucParent.setLeft(new AVLNode());
-				   sucParent.getLeft().setParent(sucParent);
-			   }
-			   else {
-				   successor.getRight().setParent(sucParent);
-				   sucParent.setLeft(successor.getRight());
+		   try {
+			   int[] keys = new int[n];
+			   long previous = Integer.MIN_VALUE;
+			   for (int i = 0; i < n; i++) {
+				   long delta = readVarint(data);
+				   // the first key may be Integer.MIN_VALUE, every other key is larger than the previous one.
+				   if (delta < (i == 0 ? 0 : 1) || delta > (long) Integer.MAX_VALUE - previous) {
+					   throw new IOException("corrupted AVLTree snapshot: " + file);
+				   }
+				   previous += delta;
+				   keys[i] = (int) previous;
 			   }
-			   successor.setRight(node.getRight());
-			   successor.setLeft(node.getLeft());
-			   successor.getRight().setParent(successor);
-			   successor.getLeft().setParent(successor);
-			   if (parent == null) {
-				   successor.setParent(null);
-				   this.root = successor;
+			   if (data.position() != SNAPSHOT_HEADER + keyBytes) {
+				   throw new IOException("corrupted AVLTree snapshot: " + file);
 			   }
-			   else {
-				   successor.setParent(parent);
-				   if (parent.getKey() > node.getKey()) {
-					   parent.setLeft(successor);
+			   
+			   String[] values = new String[n];
+			   for (int i = 0; i < n; i++) {
+				   long length = readVarint(data) - 1;
+				   if (length > data.remaining() || length < -1) {
+					   throw new IOException("corrupted AVLTree snapshot: " + file);
+				   }
+				   if (length >= 0) {
+					   values[i] = StandardCharsets.UTF_8.decode(data.slice().limit((int) length)).toString();
+					   data.position(data.position() + (int) length);
 				   }
-				   else {
-					   parent.setRight(successor);
-				   } 
 			   }
-			   successor.setHeight(node.getHeight());
-			   return sucParent;  
+			   if (data.hasRemaining()) {
+				   throw new IOException("corrupted AVLTree snapshot: " + file);
+			   }
+			   
+			   // fromSorted complexity: O(n).
+			   return fromSorted(keys, values);
+		   }
+		   catch (RuntimeException e) {
+			   // a truncated file ends the buffer in the middle of an item.
+			   throw new IOException("corrupted AVLTree snapshot: " + file, e);
 		   }
 	   }
    }
    
-   // finds node with minimal key.
-   // complexity: O(log(n)).
-   private IAVLNode min(IAVLNode node) {
-	   if (!node.getLeft().isRealNode()) {
-		   return node;
-	   }
+   /**
+    * public void union(AVLTree t)
+    *
+    * Adds the items of t to the tree. If a key is in both trees, the info of the tree is kept.
+    * The nodes of t are moved to the tree, so t should not be used after the operation.
+    * The two halves of each step are computed in parallel, with the common ForkJoinPool.
+    * Throws IllegalArgumentException if t and the tree have different augmentations.
+    */
+   public void union(AVLTree t)
+   {
+	   // COMPLEXITY: O(m*log(n/m + 1)) work, m <= n are the sizes of the trees.
 	   
-	   return min(node.getLeft());
+	   checkAugmentation(t);
+	   setAll(ForkJoinPool.commonPool().invoke(new SetTask(SetTask.UNION, subtree(this.getRoot()), subtree(t.getRoot()))));
    }
    
-   // finds node with maximal key.
-   // complexity: O(log(n)).
-   private IAVLNode max(IAVLNode node) {
-	   if (!node.getRight().isRealNode()) {
-		   return node;
-	   }
+   /**
+    * public void intersection(AVLTree t)
+    *
+    * Keeps only the items of the tree whose key is also in t.
+    * Nodes of t might be moved to the tree, so t should not be used after the operation.
+    * The two halves of each step are computed in parallel, with the common ForkJoinPool.
+    * Throws IllegalArgumentException if t and the tree have different augmentations.
+    */
+   public void intersection(AVLTree t)
+   {
+	   // COMPLEXITY: O(m*log(n/m + 1)) work, m <= n are the sizes of the trees.
 	   
-	   return min(node.getRight());
+	   checkAugmentation(t);
+	   setAll(ForkJoinPool.commonPool().invoke(new SetTask(SetTask.INTERSECTION, subtree(this.getRoot()), subtree(t.getRoot()))));
    }
-
-   // rebalance tree from curr node up to the root.
-   // complexity: O(log(n)).
-   private int rebalance(IAVLNode curr) {
-	   int counter = 0;
+   
+   /**
+    * public void difference(AVLTree t)
+    *
+    * Removes from the tree the items whose key is in t.
+    * Nodes of t might be moved, so t should not be used after the operation.
+    * The two halves of each step are computed in parallel, with the common ForkJoinPool.
+    * Throws IllegalArgumentException if t and the tree have different augmentations.
+    */
+   public void difference(AVLTree t)
+   {
+	   // COMPLEXITY: O(m*log(n/m + 1)) work, m <= n are the sizes of the trees.
 	   
-	   // going up to the root.
-	   while (curr.getParent() != null) {
-		   IAVLNode parent = curr.getParent();
-		   if (parent.getHeight() - curr.getHeight() == 0) {
-			   // case 1.
-			   if (Math.abs(getBalanceFactor(parent)) == 1) {
-				   parent.promote();
-				   counter++;
-				   curr = curr.getParent();
-				   continue;
-			   }
-			   
-			   // cases 2 + 3.
-			   if (Math.abs(getBalanceFactor(parent)) == 2) {
-				   // we are left child.
-				   if (parent.getLeft() == curr) {
-					   if (getBalanceFactor(curr) == -1) {
-						   // case 2
-						   rotateRight(curr);
-						   parent.demote();
-						   counter += 2;
-					   }
-					   else if (getBalanceFactor(curr) == 1) {
-						   // case 3.
-						   curr.demote();
-						   parent.demote();
-						   curr.getRight().promote();
-						   rotateLeft(curr.getRight());
-						   rotateRight(curr.getParent());
-						   counter += 5;
-					   }
-					   else if(getBalanceFactor(curr) == 0) {
-							// special case, could happen only after - join().
-							curr.promote();
-							rotateRight(curr);
-							continue;
-										   
-						}
-				   }
-				   // we are right child.
-				   else if (parent.getRight() == curr) {
-					   if (getBalanceFactor(curr) == 1) {
-						   // case 2.
-						   rotateLeft(curr);
-						   parent.demote();
-						   counter += 2;
-					   }
-					   else if (getBalanceFactor(curr) == -1) {
-						   // case 3.
-						   curr.demote();
-						   parent.demote();
-						   curr.getLeft().promote();
-						   rotateRight(curr.getLeft());
-						   rotateLeft(curr.getParent());
-						   counter += 5;
-					   }
-					   else if(getBalanceFactor(curr) == 0) {
-							// special case, could happen only after - join()
-							curr.promote();
-							rotateLeft(curr);
-							continue;
-						}
-				   }
-				   break;
-			   }
-		   }
-		   else {
-			   break;
-		   }
-	   }
-	   return counter;
+	   checkAugmentation(t);
+	   setAll(ForkJoinPool.commonPool().invoke(new SetTask(SetTask.DIFFERENCE, subtree(this.getRoot()), subtree(t.getRoot()))));
    }
    
+   /**
+    * public void parallelForEach(ItemConsumer action)
+    *
+    * Calls action for every item in the tree, in parallel, with the common ForkJoinPool.
+    * The work is split at subtree boundaries, so the order of the calls is not defined.
+    */
+   public void parallelForEach(ItemConsumer action)
+   {
+	   // COMPLEXITY: O(n) work, O(log(n) + THRESHOLD) span.
+	   
+	   ForkJoinPool.commonPool().invoke(new ForEachTask(this.getRoot(), action));
+   }
    
-   // rebalance tree after deletion of node curr.
-   // complexity: O(log(n)).
-   private int delRebalance(IAVLNode curr) {
-	   int counter = 0;
+   /**
+    * public <R> R parallelReduce(R identity, ItemFunction<R> mapper, BinaryOperator<R> combiner)
+    *
+    * Maps every item in the tree with mapper and combines the results with combiner,
+    * in parallel, with the common ForkJoinPool. Results are combined in the order of the keys,
+    * so combiner only has to be associative. Returns identity if the tree is empty.
+    */
+   public <R> R parallelReduce(R identity, ItemFunction<R> mapper, BinaryOperator<R> combiner)
+   {
+	   // COMPLEXITY: O(n) work, O(log(n) + THRESHOLD) span.
 	   
-	   // going up to the root.
-	   while (curr != null) {
-		   int bf = curr.getBalanceFactor();
-		   if (bf == -2) {
-			   IAVLNode right = curr.getRight();
-			   if (right.getBalanceFactor() == -1 || right.getBalanceFactor() == 0) {
-				   rotateLeft(right);
-				   curr.updateHeight();
-				   right.updateHeight();
-				   curr = right.getParent();
-				   counter += 3;
-			   }
-			   else if (right.getBalanceFactor() == 1) {
-				   IAVLNode son = right.getLeft();
-				   rotateRight(son);
-				   rotateLeft(son);
-				   right.updateHeight();
-				   curr.updateHeight();
-				   son.updateHeight();
-				   curr = son.getParent();
-				   counter += 5;
-			   }
-		   }
-		   else if (bf == 2) {
-			   IAVLNode left = curr.getLeft();
-			   if (left.getBalanceFactor() == -1) {
-				   IAVLNode son = left.getRight();
-				   rotateLeft(son);
-				   rotateRight(son);
-				   left.updateHeight();
-				   curr.updateHeight();
-				   son.updateHeight();
-				   curr = son.getParent();
-				   counter += 5;
-			   }
-			   else if (left.getBalanceFactor() == 1 || left.getBalanceFactor() == 0) {
-				   rotateRight(left);
-				   curr.updateHeight();
-				   left.updateHeight();
-				   curr = left.getParent();
-				   counter += 3;
-			   }
+	   return ForkJoinPool.commonPool().invoke(new ReduceTask<R>(this.getRoot(), identity, mapper, combiner));
+   }
+   
+   /**
+    * public Cursor iterator(int lo, int hi)
+    *
+    * Returns a cursor over the keys k with lo <= k <= hi, in increasing order.
+    * The tree must not be changed while the cursor is used.
+    */
+   public Cursor iterator(int lo, int hi)
+   {
+	   // COMPLEXITY: O(log(n)) to find the first key, O(1) amortized for each step.
+	   
+	   return new Cursor(ceilingNode(lo), lo, hi, false);
+   }
+   
+   /**
+    * public Cursor descendingIterator(int lo, int hi)
+    *
+    * Returns a cursor over the keys k with lo <= k <= hi, in decreasing order.
+    * The tree must not be changed while the cursor is used.
+    */
+   public Cursor descendingIterator(int lo, int hi)
+   {
+	   // COMPLEXITY: O(log(n)) to find the first key, O(1) amortized for each step.
+	   
+	   return new Cursor(floorNode(hi), lo, hi, true);
+   }
+   
+   /**
+    * public Cursor ascendingCursor()
+    *
+    * Returns a cursor over all the keys in the tree, in increasing order.
+    */
+   public Cursor ascendingCursor()
+   {
+	   // COMPLEXITY: O(1) to find the first key, O(1) amortized for each step.
+	   
+	   return new Cursor(this.minNode, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+   }
+   
+   /**
+    * public Cursor descendingCursor()
+    *
+    * Returns a cursor over all the keys in the tree, in decreasing order.
+    */
+   public Cursor descendingCursor()
+   {
+	   // COMPLEXITY: O(1) to find the first key, O(1) amortized for each step.
+	   
+	   return new Cursor(this.maxNode, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+   }
+   
+   /**
+    * public <A> A aggregate(int lo, int hi)
+    *
+    * Returns the augmented value of the items with keys in [lo, hi], combined in increasing order of keys,
+    * or the identity if there are no such items.
+    *
+    * Throws IllegalStateException if the tree was created without an Augmentation.
+    *
+    * precondition: the tree was created with an Augmentation of type A.
+    * postcondition: none
+    */
+   @SuppressWarnings("unchecked")
+   public <A> A aggregate(int lo, int hi)
+   {
+	   // COMPLEXITY: O(log(n)).
+	   
+	   Augmentation<Object> aug = this.augmentation;
+	   if (aug == null) {
+		   throw new IllegalStateException("the tree was created without an Augmentation");
+	   }
+	   
+	   // find the highest node in [lo, hi], all the other items in the range are in its subtree.
+	   IAVLNode x = getRoot();
+	   while (x.isRealNode() && (x.getKey() < lo || x.getKey() > hi)) {
+		   x = x.getKey() < lo ? x.getRight() : x.getLeft();
+	   }
+	   if (!x.isRealNode()) {
+		   return (A) aug.identity();
+	   }
+	   
+	   // items in the left subtree of x with keys >= lo.
+	   // each node in the range adds itself and its right subtree before the items found so far.
+	   Object leftPart = aug.identity();
+	   IAVLNode y = x.getLeft();
+	   while (y.isRealNode()) {
+		   if (y.getKey() >= lo) {
+			   Object item = aug.combine(aug.of(y.getKey(), y.getValue()), aggregateOf(y.getRight()));
+			   leftPart = aug.combine(item, leftPart);
+			   y = y.getLeft();
 		   }
 		   else {
-			   // need to update height of node.
-			   if (!curr.isHeightUpdated()) {
-				   curr.updateHeight();
-				   counter++;
-			   }
-			   curr = curr.getParent();
+			   y = y.getRight();
 		   }
 	   }
-	   return counter;
+	   
+	   // items in the right subtree of x with keys <= hi, symmetric to the left part.
+	   Object rightPart = aug.identity();
+	   y = x.getRight();
+	   while (y.isRealNode()) {
+		   if (y.getKey() <= hi) {
+			   Object item = aug.combine(aggregateOf(y.getLeft()), aug.of(y.getKey(), y.getValue()));
+			   rightPart = aug.combine(rightPart, item);
+			   y = y.getRight();
+		   }
+		   else {
+			   y = y.getLeft();
+		   }
+	   }
+	   
+	   return (A) aug.combine(leftPart, aug.combine(aug.of(x.getKey(), x.getValue()), rightPart));
    }
    
-   private int getBalanceFactor(IAVLNode node) {
-	   return node.getRight().getHeight() - node.getLeft().getHeight();
+   /**
+    * public Spliterator.OfInt spliterator()
+    *
+    * Returns a spliterator over the keys of the tree, in increasing order.
+    * trySplit() divides the remaining keys into two halves of the same size.
+    * The tree must not be changed while the spliterator is used.
+    */
+   public Spliterator.OfInt spliterator()
+   {
+	   // COMPLEXITY: O(1). trySplit() is O(log(n)), each step is O(1) amortized.
+	   
+	   return new KeySpliterator(this.minNode, 0, size());
    }
-
    
-   // rotate right around node and it's parent.
-   // complexity: O(1) (pointers).
-   private void rotateRight(IAVLNode node) {
-	   IAVLNode parent = node.getParent();
-	   parent.setLeft(node.getRight());
-	   node.getRight().setParent(parent);
-	   //if parent is the tree root.
-	   if(parent.getParent() == null) {
-		   this.root = node;
-		   node.setParent(null);
-	   }
-	   // if the parent is a left child.
-	   else if(parent.getParent().getLeft() == parent) {
-		   parent.getParent().setLeft(node);
-		   node.setParent(parent.getParent());
+   /**
+    * public IntStream keys()
+    *
+    * Returns a stream of the keys of the tree, in increasing order.
+    */
+   public IntStream keys()
+   {
+	   // COMPLEXITY: O(1).
+	   
+	   return StreamSupport.intStream(spliterator(), false);
+   }
+   
+   /**
+    * public Stream<Map.Entry<Integer, String>> entries()
+    *
+    * Returns a stream of the items of the tree as (key, info) entries, in increasing order of keys.
+    */
+   public Stream<Map.Entry<Integer, String>> entries()
+   {
+	   // COMPLEXITY: O(1).
+	   
+	   return StreamSupport.stream(new EntrySpliterator(this.minNode, 0, size()), false);
+   }
+   
+   /**
+    * public FrozenAVLTree freeze()
+    *
+    * Returns an immutable copy of the items of the tree, laid out for fast searches.
+    * The tree itself is not changed, and later changes of it are not seen by the copy.
+    * Throws IllegalArgumentException if the tree has more than 2^30 - 1 items.
+    */
+   public FrozenAVLTree freeze()
+   {
+	   // COMPLEXITY: O(n).
+	   
+	   FrozenAVLTree.checkSize(size());
+	   int[] keys = new int[size()];
+	   String[] values = new String[size()];
+	   
+	   // exportItems complexity: O(n).
+	   exportItems(0, keys, values, 0, keys.length);
+	   
+	   return new FrozenAVLTree(keys, values);
+   }
+   
+   /**
+    * public void setIndexed(boolean indexed)
+    *
+    * Turns the hash index of the keys on or off. With the index, search and delete find
+    * their node in O(1) expected time instead of O(log(n)), and insert finds an existing key in O(1).
+    * insert and delete keep the index in O(1) expected time. split gives both trees an index,
+    * which costs O(min(|t1|, |t2|)) expected more. The tree of join is indexed if this tree is:
+    * that costs O(min(|tree|, |t|)) expected more if t is indexed too, and O(|t|) if it is not.
+    * union, intersection and difference build the index again in O(n).
+    * The other operations use the tree as before.
+    */
+   public void setIndexed(boolean indexed)
+   {
+	   // COMPLEXITY: O(n) expected to build the index, O(1) to remove it.
+	   
+	   if (!indexed) {
+		   this.index = null;
 	   }
-	   // if the parent is a right child.
-	   else {
-		   parent.getParent().setRight(node);
-		   node.setParent(parent.getParent());
+	   else if (this.index == null) {
+		   this.index = buildIndex(this.minNode, this.length);
 	   }
-	   node.setRight(parent);
-	   parent.setParent(node);
    }
    
-   // rotate left around node and it's parent.
-   // complexity: O(1) (pointers).
-   private void rotateLeft(IAVLNode node) {
-	   IAVLNode parent = node.getParent();
-	   parent.setRight(node.getLeft());
-	   node.getLeft().setParent(parent);
-	   //if parent is the tree root.
-	   if(parent.getParent() == null) {
+   /**
+    * public boolean isIndexed()
+    *
+    * Returns true if and only if the tree keeps a hash index of its keys (see setIndexed()).
+    */
+   public boolean isIndexed()
+   {
+	   // COMPLEXITY: O(1).
+	   return this.index != null;
+   }
+   
+   //================================================================== ||
+   //==========================OUR_FUNCTIONS=========================== ||
+   //================================================================== \/
+   
+   // finds node with key k.
+   // returns null if there is no such key in the tree.
+   // complexity: O(log(n)).
+   private IAVLNode treeSearch(int k) {	   
+ 	  IAVLNode x = getRoot();
+ 	  int length = 0;
+ 	  while (x.isRealNode()) {
+ 		  length++;
+ 		  if (x.getKey() == k) {
+ 			  Metrics.searchPath(length);
+ 			  return x;
+ 		  }
+ 		  else if (x.getKey() > k) {
+ 			  x = x.getLeft();
+ 		  }
+ 		  else {
+ 			  x = x.getRight();
+ 		  }
+ 	  }
+ 	  Metrics.searchPath(length);
+ 	  return null;
+   }
+   
+   // inserts node, searching for its position from start.
+   // returns the number of re-balancing operations, or -1 if its key already exists.
+   // complexity: O(log(n)).
+   private int insertNode(IAVLNode node, IAVLNode start) {
+	   int k = node.getKey();
+	   
+	   // insert node as root.
+	   if (empty()) {
 		   this.root = node;
-		   node.setParent(null);
+		   this.minNode = node;
+		   this.maxNode = node;
+		   this.length++;
+		   if (this.index != null) {
+			   this.index.put(node);
+		   }
+		   return 0;
 	   }
-	   // if the parent is a left child.
-	   else if(parent.getParent().getLeft() == parent) {
-		   parent.getParent().setLeft(node);
-		   node.setParent(parent.getParent());
+	   
+	   // regular BST insert.
+	   // treeInsert complexity: O(log(n)).
+	   int result = treeInsert(start, node);
+	   
+	   // node already exists in tree.
+	   if (result == -1) {
+		   return -1;
 	   }
-	   // if the parent is a right child.
-	   else {
-		   parent.getParent().setRight(node);
-		   node.setParent(parent.getParent());
+	   
+	   this.length++;
+	   if (this.index != null) {
+		   this.index.put(node);
 	   }
-	   node.setLeft(parent);
-	   parent.setParent(node);
+	   
+	   // update the min and max nodes.
+	   if (k < this.minNode.getKey()) {
+		   this.minNode = node;
+	   }
+	   if (k > this.maxNode.getKey()) {
+		   this.maxNode = node;
+	   }
+	   
+	   // rebalance after insertion.
+	   // rebalance complexity: O(log(n)).
+	   int counter = rebalance(node);
+	   
+	   // update subtree sizes on the path to the root.
+	   // updateSizes complexity: O(log(n)).
+	   updateSizes(node);
+	   
+	   return counter;
    }
    
-   // in order scan of the tree.
-   // complexity: O(n).
-   private void inOrder(IAVLNode x, IAVLNode[] array, int[] index) {
-	   if (!x.isRealNode()) {
-		   return;
+   // deletes node from the tree and rebalances it.
+   // returns the number of re-balancing operations.
+   // complexity: O(log(n)).
+   private int deleteNode(IAVLNode node) {
+	   // update the min and max nodes before node is removed.
+	   // complexity: O(1), the min node has no left child and the max node has no right child.
+	   if (node == this.minNode) {
+		   this.minNode = successor(node);
+	   }
+	   if (node == this.maxNode) {
+		   this.maxNode = predecessor(node);
+	   }
+	   if (this.index != null) {
+		   this.index.remove(node.getKey());
+	   }
+	   
+	   // regular BST delete
+	   // treeDelete worst case complexity (when finding successor): O(log(node.height)).
+	   node = treeDelete(node);
+	   this.length--;
+	   
+	   if (node == null) {
+		   return 0;
 	   }
 	   
-	   inOrder(x.getLeft(), array, index);
-	   array[index[0]] = x;
-	   index[0]++;
-	   inOrder(x.getRight(), array, index);
+	   // rebalance tree after deletion.
+	   // delRebalance complexity: O(log(n)).
+	   return delRebalance(node);
    }
    
-   // get the rank of the tree.
-   // complexity: O(1).
-   public int getRank() {
-	   return this.getRoot().getHeight();
+   // insert the node in the correct position.
+   // complexity: O(log(n)).
+   private int treeInsert(IAVLNode startNode, IAVLNode newNode) {
+	   IAVLNode parent = treePosition(startNode, newNode.getKey());
+	   
+	   // node already exists.
+	   if (newNode.getKey() == parent.getKey()) {
+		   return -1;
+	   }
+	   
+	   // insert the node.
+	   newNode.setParent(parent);
+	   if (newNode.getKey() < parent.getKey()) {
+		   parent.setLeft(newNode);
+	   }
+	   else {
+		   parent.setRight(newNode);
+	   }
+	   return 1;
    }
    
-   
-   // TO BE REMOVED!!!!!
-   public void print(IAVLNode node, int level) { /////aux tester func
-		if (node == null) {
-			return;
-		}
-		//System.out.println("Level: " + level + " , " + node.getKey() + " , " + node.getValue());
-		if ((node.getKey() != -1) && ((node.getBalanceFactor() >= 2) || (node.getBalanceFactor() <= -2))) {
-			System.out.println("node" + node.getKey() + " is unbalanced. BF is " + node.getBalanceFactor() + ". sons are "
-					+ node.getLeft().getKey() + " rank=" + node.getLeft().getHeight() + " " + node.getRight().getKey() + " rank=" + node.getRight().getHeight()
-					+ "*********");
-		} else if (((node.getRight() != null) && (node.getRight().getKey() < node.getKey()) && (node.getRight().getKey() != -1))
-				|| ((node.getLeft() != null) && (node.getLeft().getKey() > node.getKey()) && (node.getLeft().getKey() != -1))) {
-			System.out.println("node" + node.getKey() + "is not in order********");
-		} else if ((node.getHeight() == -1) && ((node.getRight() != null) || (node.getLeft() != null))) {
-			System.out.println("virtual son of" + node.getParent().getKey() + " has a son*********");
-		} else if ((node.getRight() != null) && (node.getRight().getParent() != node)
-				|| ((node.getLeft() != null) && (node.getLeft().getParent() != node))) {
-			System.out.println("one of" + node.getKey() + "sons is not connected to him*********");
-		} else if ((node.getParent() != null) && (node.getParent().getRight() != node) && (node.getParent().getLeft() != node)) {
-			System.out.println("node" + node.getKey() + " is not connected to parent********");
-		} else if ((node.getHeight() != -1) && (node.getHeight() != (Math.max(node.getLeft().getHeight(), node.getRight().getHeight()) + 1))) {
-			System.out.println("node" + node.getKey() + " rank is not adjusted, his rank is" + node.getHeight());
-			System.out.println("sons are" + node.getLeft().getKey() + " rank " + node.getLeft().getHeight() + " and " + node.getRight().getKey()
-					+ " rank " + node.getRight().getHeight());
-		}
-
-		if (node.getLeft() != null)
-			print((AVLNode) (node.getLeft()), level + 1);
-		if (node.getRight() != null)
-			print((AVLNode) node.getRight(), level + 1);
-	}
-
-   
-   
-   /** 
-	 * public interface IAVLNode
-	 * ! Do not delete or modify this - otherwise all tests will fail !
-	 */
+   // find the position of the parent of the node to be inserted.
+   // complexity: O(log(n)).
+   private IAVLNode treePosition(IAVLNode startNode, int key) {
+	   
+	   IAVLNode parent = null;
+	   int length = 0;
+	   while (startNode.isRealNode()) {
+		   parent = startNode;
+		   length++;
+		   if (key == startNode.getKey()) {
+			   Metrics.searchPath(length);
+			   return startNode;
+		   }
+		   else if (key < startNode.getKey() ) {
+			   startNode = startNode.getLeft();
+		   }
+		   else {
+			   startNode = startNode.getRight();
+		   }
+	   }
+	   Metrics.searchPath(length);
+	   return parent;
+   }
+   
+   // return the parent of the node to be deleted.
+   // post the tree without the node to be deleted.
+   // complexity: O(log(node.height)).
+   private IAVLNode treeDelete(IAVLNode node) {
+	   IAVLNode parent = node.getParent();
+	   
+	   // node to delete is a leaf.
+	   if (node.isLeaf()) {
+		   if (parent == null) {
+			   this.root = this.virtualNode;
+		   }
+		   else {
+			   if (parent.getKey() > node.getKey()) {
+				   parent.setLeft(this.virtualNode);
+			   }
+			   else {
+				   parent.setRight(this.virtualNode);
+			   }
+		   }
+		   return parent;
+	   }
+	   
+	   // node to delete has one child.
+	   else if (node.isUnary() != null) {
+		   IAVLNode child = node.isUnary();
+		   if (parent == null) {
+			   this.root = child;
+			   child.setParent(null);
+		   }
+		   else {
+			   if (parent.getKey() > node.getKey()) {
+				   parent.setLeft(child);
+			   }
+			   else {
+				   parent.setRight(child);
+			   }
+			   child.setParent(parent);
+		   }
+		   return parent;
+	   }
+	   
+	   // node to delete has two children.
+	   else {
+		   // finding successor takes O(node.height);
+		   IAVLNode successor = min(node.getRight());
+		   
+		   // successor is right child of node to delete.
+		   if (successor == node.getRight()) {
+			   successor.setLeft(node.getLeft());
+			   successor.getLeft().setParent(successor);
+			   if (parent == null) {
+				   this.root = successor;
+				   successor.setParent(null);
+			   }
+			   else {
+				   successor.setParent(parent);
+				   if (parent.getKey() > node.getKey()) {
+					   parent.setLeft(successor);
+				   }
+				   else {
+					   parent.setRight(successor);
+				   }
+			   }
+			   successor.setHeight(node.getHeight());
+			   return successor;
+		   }
+		   
+		   // successor is a child in the right subtree.
+		   else {
+			   IAVLNode sucParent = successor.getParent();
+			   if (successor.isLeaf()) {
+				   sucParent.setLeft(this.virtualNode);
+			   }
+			   else {
+				   successor.getRight().setParent(sucParent);
+				   sucParent.setLeft(successor.getRight());
+			   }
+			   successor.setRight(node.getRight());
+			   successor.setLeft(node.getLeft());
+			   successor.getRight().setParent(successor);
+			   successor.getLeft().setParent(successor);
+			   if (parent == null) {
+				   successor.setParent(null);
+				   this.root = successor;
+			   }
+			   else {
+				   successor.setParent(parent);
+				   if (parent.getKey() > node.getKey()) {
+					   parent.setLeft(successor);
+				   }
+				   else {
+					   parent.setRight(successor);
+				   } 
+			   }
+			   successor.setHeight(node.getHeight());
+			   return sucParent;  
+		   }
+	   }
+   }
+   
+   // finds node with minimal key.
+   // complexity: O(log(n)).
+   private IAVLNode min(IAVLNode node) {
+	   if (!node.getLeft().isRealNode()) {
+		   return node;
+	   }
+	   
+	   return min(node.getLeft());
+   }
+   
+   // finds node with maximal key.
+   // complexity: O(log(n)).
+   private IAVLNode max(IAVLNode node) {
+	   if (!node.getRight().isRealNode()) {
+		   return node;
+	   }
+	   
+	   return max(node.getRight());
+   }
+   
+   // finds the node with the smallest key >= k, or null if there is no such key.
+   // complexity: O(log(n)).
+   private IAVLNode ceilingNode(int k) {
+	   IAVLNode ceiling = null;
+	   IAVLNode x = getRoot();
+	   while (x.isRealNode()) {
+		   if (x.getKey() == k) {
+			   return x;
+		   }
+		   else if (x.getKey() > k) {
+			   // x is a candidate, a smaller one might be on the left.
+			   ceiling = x;
+			   x = x.getLeft();
+		   }
+		   else {
+			   x = x.getRight();
+		   }
+	   }
+	   return ceiling;
+   }
+   
+   // finds the node with the largest key <= k, or null if there is no such key.
+   // complexity: O(log(n)).
+   private IAVLNode floorNode(int k) {
+	   IAVLNode floor = null;
+	   IAVLNode x = getRoot();
+	   while (x.isRealNode()) {
+		   if (x.getKey() == k) {
+			   return x;
+		   }
+		   else if (x.getKey() < k) {
+			   // x is a candidate, a larger one might be on the right.
+			   floor = x;
+			   x = x.getRight();
+		   }
+		   else {
+			   x = x.getLeft();
+		   }
+	   }
+	   return floor;
+   }
+   
+   // finds the node with the next key, or null if node has the largest key.
+   // complexity: O(log(n)). O(1) for the min node.
+   private IAVLNode successor(IAVLNode node) {
+	   if (node.getRight().isRealNode()) {
+		   return min(node.getRight());
+	   }
+	   
+	   // going up until we come from a left child.
+	   IAVLNode parent = node.getParent();
+	   while (parent != null && parent.getRight() == node) {
+		   node = parent;
+		   parent = node.getParent();
+	   }
+	   return parent;
+   }
+   
+   // finds the node with the previous key, or null if node has the smallest key.
+   // complexity: O(log(n)). O(1) for the max node.
+   private IAVLNode predecessor(IAVLNode node) {
+	   if (node.getLeft().isRealNode()) {
+		   return max(node.getLeft());
+	   }
+	   
+	   // going up until we come from a right child.
+	   IAVLNode parent = node.getParent();
+	   while (parent != null && parent.getLeft() == node) {
+		   node = parent;
+		   parent = node.getParent();
+	   }
+	   return parent;
+   }
+   
+   // finds node with the i'th smallest key (starting at 1).
+   // returns null if i is out of range.
+   // complexity: O(log(n)).
+   private IAVLNode treeSelect(int i) {
+	   if (i < 1 || i > getRoot().getSize()) {
+		   return null;
+	   }
+	   
+	   IAVLNode x = getRoot();
+	   while (x.isRealNode()) {
+		   int leftSize = x.getLeft().getSize();
+		   if (i == leftSize + 1) {
+			   return x;
+		   }
+		   else if (i <= leftSize) {
+			   x = x.getLeft();
+		   }
+		   else {
+			   // skip x and its left subtree.
+			   i -= leftSize + 1;
+			   x = x.getRight();
+		   }
+	   }
+	   return null;
+   }
+   
+   // makes node the root of this tree.
+   // complexity: O(1).
+   private void setRoot(IAVLNode node) {
+	   this.root = node;
+	   this.root.setParent(null);
+	   this.length = node.getSize();
+   }
+   
+   // detach node from its tree, so it can be used as the middle node of join.
+   // complexity: O(1).
+   private void detach(IAVLNode node) {
+	   node.setLeft(this.virtualNode);
+	   node.setRight(this.virtualNode);
+	   node.setParent(null);
+	   node.setHeight(0);
+	   updateSize(node);
+   }
+   
+   // the nodes of t are moved to this tree, and their aggregates are computed with the augmentation
+   // of the tree that created them, so the two trees must have the same one.
+   // complexity: O(1).
+   private void checkAugmentation(AVLTree t) {
+	   if (t.augmentation != this.augmentation) {
+		   throw new IllegalArgumentException("the trees have different augmentations");
+	   }
+   }
+   
+   // creates a tree with root node, without finding its min and max nodes.
+   // complexity: O(1).
+   private static AVLTree subtree(IAVLNode node) {
+	   AVLTree tree = new AVLTree();
+	   tree.setRoot(node);
+	   return tree;
+   }
+   
+   // makes the tree of t the tree of this, and finds its min and max nodes.
+   // complexity: O(log(n)).
+   private void setAll(AVLTree t) {
+	   setBuiltRoot(t.getRoot());
+	   if (t.empty()) {
+		   this.minNode = null;
+		   this.maxNode = null;
+	   }
+	   // the nodes were changed everywhere in the tree, so the index is built again.
+	   // buildIndex complexity: O(n) expected.
+	   if (this.index != null) {
+		   this.index = buildIndex(this.minNode, this.length);
+	   }
+   }
+   
+   // builds an index of the nodes from first to the max node, with room for size nodes.
+   // complexity: O(size) expected.
+   private NodeIndex buildIndex(IAVLNode first, int size) {
+	   NodeIndex result = new NodeIndex(size);
+	   for (IAVLNode node = first; node != null; node = successor(node)) {
+		   result.put(node);
+	   }
+	   return result;
+   }
+   
+   // gives the index of this tree (without x) to the larger of left and right, and builds
+   // an index of the smaller one, whose keys are removed from the index of this tree.
+   // complexity: O(min(|left|, |right|) + 1) expected.
+   private void splitIndex(int x, AVLTree left, AVLTree right) {
+	   this.index.remove(x);
+	   AVLTree smaller = left.size() < right.size() ? left : right;
+	   AVLTree larger = smaller == left ? right : left;
+	   for (IAVLNode node = smaller.minNode; node != null; node = successor(node)) {
+		   this.index.remove(node.getKey());
+	   }
+	   larger.index = this.index;
+	   smaller.index = buildIndex(smaller.minNode, smaller.size());
+   }
+   
+   // the index of the tree joined with x and t, or null if this tree is not indexed.
+   // the index of the larger tree (if it has one) is reused, and the nodes of the other tree are added to it.
+   // must be called before the trees are joined.
+   // complexity: O(min(|tree|, |t|) + 1) expected if t is indexed, otherwise O(|t| + 1) expected
+   // (all the nodes of t are added).
+   private NodeIndex joinIndex(IAVLNode x, AVLTree t) {
+	   if (this.index == null) {
+		   return null;
+	   }
+	   NodeIndex joined = this.index;
+	   AVLTree other = t;
+	   if (t.index != null && t.size() > this.size()) {
+		   joined = t.index;
+		   other = this;
+	   }
+	   for (IAVLNode node = other.minNode; node != null; node = successor(node)) {
+		   joined.put(node);
+	   }
+	   joined.put(x);
+	   return joined;
+   }
+   
+   // splits the tree by the key k, which might not be in the tree.
+   // returns [t1, t2] with keys(t1) < k < keys(t2). found[0] is the node with key k (detached) or null.
+   // complexity: O(log(n)).
+   private AVLTree[] splitAt(int k, IAVLNode[] found) {
+	   found[0] = null;
+	   if (this.empty()) {
+		   return new AVLTree[] {subtree(this.virtualNode), subtree(this.virtualNode)};
+	   }
+	   
+	   IAVLNode node = treePosition(this.getRoot(), k);
+	   if (node.getKey() == k) {
+		   AVLTree[] trees = treeSplit(k, node.getLeft(), node.getRight(), node.getParent());
+		   detach(node);
+		   found[0] = node;
+		   return trees;
+	   }
+	   
+	   // k would be a child of node, so the split starts from an empty position below it.
+	   return treeSplit(k, this.virtualNode, this.virtualNode, node);
+   }
+   
+   // joins the trees left < right, without a middle node.
+   // the min node of right is removed from it and is used as the middle node.
+   // complexity: O(log(n)).
+   private static AVLTree joinTrees(AVLTree left, AVLTree right) {
+	   if (right.empty()) {
+		   return left;
+	   }
+	   
+	   IAVLNode node = right.min(right.getRoot());
+	   right.deleteNode(node);
+	   right.detach(node);
+	   left.treeJoin(node, right);
+	   return left;
+   }
+   
+   // writes the buffer to channel and clears it.
+   // complexity: O(the bytes in the buffer).
+   private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+	   buffer.flip();
+	   while (buffer.hasRemaining()) {
+		   channel.write(buffer);
+	   }
+	   buffer.clear();
+   }
+   
+   // writes value (>= 0) 7 bits in a byte, the low bits first. the high bit marks that more bytes follow.
+   // complexity: O(1).
+   private static void writeVarint(ByteBuffer buffer, long value) {
+	   while (value >= 0x80) {
+		   buffer.put((byte) (value | 0x80));
+		   value >>>= 7;
+	   }
+	   buffer.put((byte) value);
+   }
+   
+   // reads a value written by writeVarint.
+   // complexity: O(1).
+   private static long readVarint(ByteBuffer buffer) {
+	   long value = 0;
+	   for (int shift = 0; ; shift += 7) {
+		   byte b = buffer.get();
+		   value |= (long) (b & 0x7F) << shift;
+		   if (b >= 0) {
+			   return value;
+		   }
+	   }
+   }
+   
+   // sorts the keys in parallel. returns (key, index) pairs, with the key in the high 32 bits,
+   // so equal keys keep their original order.
+   // complexity: O(n*log(n)).
+   private static long[] sortPairs(int[] keys) {
+	   long[] pairs = new long[keys.length];
+	   for (int i = 0; i < keys.length; i++) {
+		   pairs[i] = ((long) keys[i] << 32) | i;
+	   }
+	   Arrays.parallelSort(pairs);
+	   return pairs;
+   }
+   
+   // the node to search the position of a new key k from: the max (min) node if k is larger (smaller)
+   // than all the keys, where k becomes its right (left) child, and the root otherwise.
+   // complexity: O(1).
+   private IAVLNode searchStart(int k) {
+	   if (!empty() && k > this.maxNode.getKey()) {
+		   return this.maxNode;
+	   }
+	   if (!empty() && k < this.minNode.getKey()) {
+		   return this.minNode;
+	   }
+	   return getRoot();
+   }
+   
+   // finds the ancestor of finger to start a search for key k from.
+   // going up stops at the first ancestor whose subtree is bounded by its parent on the side of k.
+   // complexity: O(h), h is the height of the returned subtree, and the search down from it is O(h) too.
+   // this is O(log(n)) in the worst case, even for adjacent keys: without level links, a finger at the max
+   // of the left subtree of the root and k at the min of its right subtree go up to the root.
+   // it is cheaper when the finger and k are in a small common subtree, as for clustered keys.
+   private IAVLNode fingerStart(IAVLNode finger, int k) {
+	   IAVLNode x = finger;
+	   IAVLNode parent = x.getParent();
+	   if (k > finger.getKey()) {
+		   // going up until the parent is larger than k.
+		   while (parent != null && (parent.getRight() == x || parent.getKey() < k)) {
+			   x = parent;
+			   parent = x.getParent();
+		   }
+	   }
+	   else {
+		   // going up until the parent is smaller than k.
+		   while (parent != null && (parent.getLeft() == x || parent.getKey() > k)) {
+			   x = parent;
+			   parent = x.getParent();
+		   }
+	   }
+	   if (parent != null && parent.getKey() == k) {
+		   return parent;
+	   }
+	   return x;
+   }
+   
+   // builds a balanced tree from the sorted items in [lo, hi) and returns its root.
+   // the middle item is the root, so the heights of the two subtrees differ by at most 1.
+   // complexity: O(hi - lo).
+   private IAVLNode buildTree(int[] keys, String[] values, int lo, int hi) {
+	   if (lo >= hi) {
+		   return this.virtualNode;
+	   }
+	   
+	   int mid = (lo + hi) >>> 1;
+	   IAVLNode node = new AVLNode(keys[mid], values[mid]);
+	   linkChildren(node, buildTree(keys, values, lo, mid), buildTree(keys, values, mid + 1, hi));
+	   return node;
+   }
+   
+   // sets the children of node and updates its height and size.
+   // complexity: O(1).
+   private void linkChildren(IAVLNode node, IAVLNode left, IAVLNode right) {
+	   node.setLeft(left);
+	   node.setRight(right);
+	   if (left.isRealNode()) {
+		   left.setParent(node);
+	   }
+	   if (right.isRealNode()) {
+		   right.setParent(node);
+	   }
+	   node.updateHeight();
+	   updateSize(node);
+   }
+   
+   // makes a built tree the root of this tree, and finds its min and max nodes.
+   // complexity: O(log(n)).
+   private void setBuiltRoot(IAVLNode node) {
+	   setRoot(node);
+	   if (node.isRealNode()) {
+		   this.minNode = min(node);
+		   this.maxNode = max(node);
+	   }
+   }
+   
+   // update subtree sizes from node up to the root.
+   // complexity: O(log(n)).
+   private void updateSizes(IAVLNode node) {
+	   while (node != null) {
+		   updateSize(node);
+		   node = node.getParent();
+	   }
+   }
+   
+   // updates the size (and the augmented value) of node according to its children.
+   // IAVLNode can not be changed, so this is a method of AVLNode.
+   // complexity: O(1).
+   private static void updateSize(IAVLNode node) {
+	   ((AVLNode) node).updateSize();
+   }
+
+   // rebalance tree from curr node up to the root.
+   // complexity: O(log(n)).
+   private int rebalance(IAVLNode curr) {
+	   int counter = 0;
+	   
+	   // going up to the root.
+	   while (curr.getParent() != null) {
+		   IAVLNode parent = curr.getParent();
+		   if (parent.getHeight() - curr.getHeight() == 0) {
+			   // case 1.
+			   if (Math.abs(getBalanceFactor(parent)) == 1) {
+				   parent.promote();
+				   Metrics.promoted();
+				   counter++;
+				   curr = curr.getParent();
+				   continue;
+			   }
+			   
+			   // cases 2 + 3.
+			   if (Math.abs(getBalanceFactor(parent)) == 2) {
+				   // we are left child.
+				   if (parent.getLeft() == curr) {
+					   if (getBalanceFactor(curr) == -1) {
+						   // case 2
+						   rotateRight(curr);
+						   parent.demote();
+						   Metrics.rotated();
+						   Metrics.demoted(1);
+						   counter += 2;
+					   }
+					   else if (getBalanceFactor(curr) == 1) {
+						   // case 3.
+						   curr.demote();
+						   parent.demote();
+						   curr.getRight().promote();
+						   rotateLeft(curr.getRight());
+						   rotateRight(curr.getParent());
+						   Metrics.doubleRotated();
+						   Metrics.demoted(2);
+						   Metrics.promoted();
+						   counter += 5;
+					   }
+					   else if(getBalanceFactor(curr) == 0) {
+							// special case, could happen only after - join().
+							curr.promote();
+							rotateRight(curr);
+							Metrics.promoted();
+							Metrics.rotated();
+							continue;
+										   
+						}
+				   }
+				   // we are right child.
+				   else if (parent.getRight() == curr) {
+					   if (getBalanceFactor(curr) == 1) {
+						   // case 2.
+						   rotateLeft(curr);
+						   parent.demote();
+						   Metrics.rotated();
+						   Metrics.demoted(1);
+						   counter += 2;
+					   }
+					   else if (getBalanceFactor(curr) == -1) {
+						   // case 3.
+						   curr.demote();
+						   parent.demote();
+						   curr.getLeft().promote();
+						   rotateRight(curr.getLeft());
+						   rotateLeft(curr.getParent());
+						   Metrics.doubleRotated();
+						   Metrics.demoted(2);
+						   Metrics.promoted();
+						   counter += 5;
+					   }
+					   else if(getBalanceFactor(curr) == 0) {
+							// special case, could happen only after - join()
+							curr.promote();
+							rotateLeft(curr);
+							Metrics.promoted();
+							Metrics.rotated();
+							continue;
+						}
+				   }
+				   break;
+			   }
+		   }
+		   else {
+			   break;
+		   }
+	   }
+	   return counter;
+   }
+   
+   
+   // rebalance tree after deletion of node curr.
+   // complexity: O(log(n)).
+   private int delRebalance(IAVLNode curr) {
+	   int counter = 0;
+	   
+	   // going up to the root.
+	   while (curr != null) {
+		   int bf = curr.getBalanceFactor();
+		   if (bf == -2) {
+			   IAVLNode right = curr.getRight();
+			   if (right.getBalanceFactor() == -1 || right.getBalanceFactor() == 0) {
+				   rotateLeft(right);
+				   curr.updateHeight();
+				   right.updateHeight();
+				   Metrics.rotated();
+				   curr = right.getParent();
+				   counter += 3;
+			   }
+			   else if (right.getBalanceFactor() == 1) {
+				   IAVLNode son = right.getLeft();
+				   rotateRight(son);
+				   rotateLeft(son);
+				   right.updateHeight();
+				   curr.updateHeight();
+				   son.updateHeight();
+				   Metrics.doubleRotated();
+				   curr = son.getParent();
+				   counter += 5;
+			   }
+		   }
+		   else if (bf == 2) {
+			   IAVLNode left = curr.getLeft();
+			   if (left.getBalanceFactor() == -1) {
+				   IAVLNode son = left.getRight();
+				   rotateLeft(son);
+				   rotateRight(son);
+				   left.updateHeight();
+				   curr.updateHeight();
+				   son.updateHeight();
+				   Metrics.doubleRotated();
+				   curr = son.getParent();
+				   counter += 5;
+			   }
+			   else if (left.getBalanceFactor() == 1 || left.getBalanceFactor() == 0) {
+				   rotateRight(left);
+				   curr.updateHeight();
+				   left.updateHeight();
+				   Metrics.rotated();
+				   curr = left.getParent();
+				   counter += 3;
+			   }
+		   }
+		   else {
+			   // need to update height of node.
+			   if (!curr.isHeightUpdated()) {
+				   curr.updateHeight();
+				   Metrics.demoted(1);
+				   counter++;
+			   }
+			   updateSize(curr);
+			   curr = curr.getParent();
+		   }
+	   }
+	   return counter;
+   }
+   
+   private int getBalanceFactor(IAVLNode node) {
+	   return node.getRight().getHeight() - node.getLeft().getHeight();
+   }
+
+   
+   // rotate right around node and it's parent.
+   // complexity: O(1) (pointers).
+   private void rotateRight(IAVLNode node) {
+	   IAVLNode parent = node.getParent();
+	   parent.setLeft(node.getRight());
+	   // the shared virtual node has no parent.
+	   if (node.getRight().isRealNode()) {
+		   node.getRight().setParent(parent);
+	   }
+	   //if parent is the tree root.
+	   if(parent.getParent() == null) {
+		   this.root = node;
+		   node.setParent(null);
+	   }
+	   // if the parent is a left child.
+	   else if(parent.getParent().getLeft() == parent) {
+		   parent.getParent().setLeft(node);
+		   node.setParent(parent.getParent());
+	   }
+	   // if the parent is a right child.
+	   else {
+		   parent.getParent().setRight(node);
+		   node.setParent(parent.getParent());
+	   }
+	   node.setRight(parent);
+	   parent.setParent(node);
+	   // parent is now the child of node, so its size is updated first.
+	   updateSize(parent);
+	   updateSize(node);
+   }
+   
+   // rotate left around node and it's parent.
+   // complexity: O(1) (pointers).
+   private void rotateLeft(IAVLNode node) {
+	   IAVLNode parent = node.getParent();
+	   parent.setRight(node.getLeft());
+	   // the shared virtual node has no parent.
+	   if (node.getLeft().isRealNode()) {
+		   node.getLeft().setParent(parent);
+	   }
+	   //if parent is the tree root.
+	   if(parent.getParent() == null) {
+		   this.root = node;
+		   node.setParent(null);
+	   }
+	   // if the parent is a left child.
+	   else if(parent.getParent().getLeft() == parent) {
+		   parent.getParent().setLeft(node);
+		   node.setParent(parent.getParent());
+	   }
+	   // if the parent is a right child.
+	   else {
+		   parent.getParent().setRight(node);
+		   node.setParent(parent.getParent());
+	   }
+	   node.setLeft(parent);
+	   parent.setParent(node);
+	   // parent is now the child of node, so its size is updated first.
+	   updateSize(parent);
+	   updateSize(node);
+   }
+   
+   // finds the node at position from (starting at 0) for the export functions.
+   // returns null if there is no such position.
+   // complexity: O(log(n)).
+   private IAVLNode exportStart(int from) {
+	   if (from < 0) {
+		   return null;
+	   }
+	   // treeSelect returns null if from is too large.
+	   return treeSelect(from + 1);
+   }
+   
+   // returns the augmented value of the subtree of node, or the identity for a virtual node.
+   // complexity: O(1).
+   private Object aggregateOf(IAVLNode node) {
+	   return node.isRealNode() ? ((AVLNode) node).aggregate : this.augmentation.identity();
+   }
+   
+   // get the rank of the tree.
+   // complexity: O(1).
+   public int getRank() {
+	   return this.getRoot().getHeight();
+   }
+   
+   
+   /** 
+	 * public interface IAVLNode
+	 * ! Do not delete or modify this - otherwise all tests will fail !
+	 */
 	public interface IAVLNode{	
 		public int getKey(); // Returns node's key (for virtual node return -1).
 		public String getValue(); // Returns node's value [info], for virtual node returns null.
@@ -939,131 +2283,4518 @@ public class AVLTree {
     	public void updateHeight(); // Updates the height according to children.
 	}
 
-   /** 
-    * public class AVLNode
-    *
-    * If you wish to implement classes other than AVLTree
-    * (for example AVLNode), do it in this file, not in another file. 
-    * 
-    * This class can and MUST be modified (It must implement IAVLNode).
-    */
-  public class AVLNode implements IAVLNode{
-	  private int key;
-	  private String info;
-	  private IAVLNode right;
-	  private IAVLNode left;
-	  private IAVLNode parent;
-	  private int height;
-	  
-	  // creates a virtual node
-	  public AVLNode() {
-		  this.key = -1;
-		  this.height = -1;
+   /** 
+    * public class AVLNode
+    *
+    * If you wish to implement classes other than AVLTree
+    * (for example AVLNode), do it in this file, not in another file. 
+    * 
+    * This class can and MUST be modified (It must implement IAVLNode).
+    */
+  public class AVLNode implements IAVLNode{
+	  private int key;
+	  private String info;
+	  private IAVLNode right;
+	  private IAVLNode left;
+	  private IAVLNode parent;
+	  private int height;
+	  private int size;
+	  // the augmented value of the subtree (null if the tree is not augmented).
+	  // the value of the node alone is not kept, updateSize() computes it again from the key and info.
+	  private Object aggregate;
+	  
+	  // creates a virtual node
+	  public AVLNode() {
+		  this.key = -1;
+		  this.height = -1;
+		  this.size = 0;
+	  }
+	  
+	  // creates a real node
+	  public AVLNode(int k, String i) {
+		  this.key = k;
+		  this.info = i;
+		  // both children are the shared virtual node of the tree.
+		  this.left = AVLTree.this.virtualNode;
+		  this.right = AVLTree.this.virtualNode;
+		  this.height = 0;
+		  this.size = 1;
+		  if (AVLTree.this.augmentation != null) {
+			  this.aggregate = AVLTree.this.augmentation.of(k, i);
+		  }
+	  }
+	  
+		public int getKey()
+		{
+			return this.key;
+		}
+		public String getValue()
+		{
+			return this.info;
+		}
+		public void setLeft(IAVLNode node)
+		{
+			this.left = node;
+		}
+		public IAVLNode getLeft()
+		{
+			return this.left;
+		}
+		public void setRight(IAVLNode node)
+		{
+			this.right = node;
+		}
+		public IAVLNode getRight()
+		{
+			return this.right;
+		}
+		public void setParent(IAVLNode node)
+		{
+			this.parent = node;
+		}
+		public IAVLNode getParent()
+		{
+			return this.parent;
+		}
+		// only virtual nodes have height -1, so the key of a real node can be any int, -1 included.
+		public boolean isRealNode()
+		{
+			return this.height != -1;
+		}
+	    public void setHeight(int height)
+	    {
+	      this.height = height;
+	    }
+	    public int getHeight()
+	    {
+	      return this.height;
+	    }
+	    public int getBalanceFactor() {
+	    	return  (this.getLeft() == null ? 0 : this.getLeft().getHeight()) - (this.getRight() == null ? 0 : this.getRight().getHeight());
+	    }  
+	    public int getSize() {
+	    	return this.size;
+	    }
+    	public boolean isLeaf() {
+    		return !this.getLeft().isRealNode() && !this.getRight().isRealNode();
+    	}
+    	public IAVLNode isUnary() {
+    		if (this.right.isRealNode() && !this.left.isRealNode()) {
+			   return this.right;
+		    }
+		    else if (!this.right.isRealNode() && this.left.isRealNode()) {
+			   return this.left;
+		    }
+		    return null;
+    	}
+    	public void promote(int num) {
+    		this.setHeight(this.getHeight()+num);
+    	}
+    	public void demote(int num) {
+    		this.setHeight(this.getHeight()-num);
+    	}
+    	public int rankDiffRight() {
+    		return this.getHeight() - this.right.getHeight();
+    	}
+    	public int rankDiffLeft() {
+    		return this.getHeight() - this.left.getHeight();
+    	}
+    	public boolean isHeightUpdated() {
+    		return this.height == Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1;
+    	}
+    	public void updateHeight() {
+    		this.setHeight(Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1);
+    	}
+    	public void updateSize() {
+    		this.size = this.getLeft().getSize() + this.getRight().getSize() + 1;
+    		
+    		// the augmentation of the tree that created the node, which is kept by join and split.
+    		Augmentation<Object> aug = AVLTree.this.augmentation;
+    		if (aug != null) {
+    			// virtual children are skipped, they might belong to a tree without augmentation.
+    			Object value = aug.of(this.key, this.info);
+    			if (this.getLeft().isRealNode()) {
+    				value = aug.combine(((AVLNode) this.getLeft()).aggregate, value);
+    			}
+    			if (this.getRight().isRealNode()) {
+    				value = aug.combine(value, ((AVLNode) this.getRight()).aggregate);
+    			}
+    			this.aggregate = value;
+    		}
+    	}
+  }
+  
+  /**
+   * private class BuildTask
+   *
+   * Builds the subtree of the sorted items in [lo, hi), like buildTree().
+   * Large ranges build their two subtrees in parallel.
+   */
+  private class BuildTask extends RecursiveTask<IAVLNode> {
+	  private static final long serialVersionUID = 1L;
+	  
+	  // ranges smaller than this are built by buildTree().
+	  private static final int THRESHOLD = 1 << 13;
+	  
+	  private final int[] keys;
+	  private final String[] values;
+	  private final int lo;
+	  private final int hi;
+	  
+	  private BuildTask(int[] keys, String[] values, int lo, int hi) {
+		  this.keys = keys;
+		  this.values = values;
+		  this.lo = lo;
+		  this.hi = hi;
+	  }
+	  
+	  protected IAVLNode compute() {
+		  if (this.hi - this.lo <= THRESHOLD) {
+			  return buildTree(this.keys, this.values, this.lo, this.hi);
+		  }
+		  
+		  int mid = (this.lo + this.hi) >>> 1;
+		  BuildTask left = new BuildTask(this.keys, this.values, this.lo, mid);
+		  BuildTask right = new BuildTask(this.keys, this.values, mid + 1, this.hi);
+		  left.fork();
+		  IAVLNode rightRoot = right.compute();
+		  IAVLNode leftRoot = left.join();
+		  
+		  IAVLNode node = new AVLNode(this.keys[mid], this.values[mid]);
+		  linkChildren(node, leftRoot, rightRoot);
+		  return node;
+	  }
+  }
+  
+  /**
+   * private static class SetTask
+   *
+   * Computes the union, intersection or difference of two trees with join and split:
+   * the first tree is split by the root of the second, the two halves are computed
+   * (in parallel if they are large enough), and the results are joined.
+   */
+  private static class SetTask extends RecursiveTask<AVLTree> {
+	  private static final long serialVersionUID = 1L;
+	  
+	  private static final int UNION = 0;
+	  private static final int INTERSECTION = 1;
+	  private static final int DIFFERENCE = 2;
+	  
+	  // steps with less items than this are computed in the current thread.
+	  private static final int THRESHOLD = 1 << 12;
+	  
+	  private final int operation;
+	  private final AVLTree first;
+	  private final AVLTree second;
+	  
+	  private SetTask(int operation, AVLTree first, AVLTree second) {
+		  this.operation = operation;
+		  this.first = first;
+		  this.second = second;
+	  }
+	  
+	  protected AVLTree compute() {
+		  AVLTree first = this.first;
+		  AVLTree second = this.second;
+		  
+		  if (first.empty() || second.empty()) {
+			  if (this.operation == UNION) {
+				  return first.empty() ? second : first;
+			  }
+			  return this.operation == INTERSECTION ? subtree(first.virtualNode) : first;
+		  }
+		  
+		  // split the first tree by the root of the second.
+		  IAVLNode root = second.getRoot();
+		  IAVLNode[] found = new IAVLNode[1];
+		  AVLTree[] parts = first.splitAt(root.getKey(), found);
+		  AVLTree secondLeft = subtree(root.getLeft());
+		  AVLTree secondRight = subtree(root.getRight());
+		  second.detach(root);
+		  
+		  SetTask leftTask = new SetTask(this.operation, parts[0], secondLeft);
+		  SetTask rightTask = new SetTask(this.operation, parts[1], secondRight);
+		  AVLTree left;
+		  AVLTree right;
+		  if (first.size() + second.size() > THRESHOLD) {
+			  leftTask.fork();
+			  right = rightTask.compute();
+			  left = leftTask.join();
+		  }
+		  else {
+			  left = leftTask.compute();
+			  right = rightTask.compute();
+		  }
+		  
+		  // the node of the first tree is kept, so its info is kept.
+		  IAVLNode middle = null;
+		  if (this.operation == UNION) {
+			  middle = found[0] != null ? found[0] : root;
+		  }
+		  else if (this.operation == INTERSECTION) {
+			  middle = found[0];
+		  }
+		  
+		  if (middle == null) {
+			  return joinTrees(left, right);
+		  }
+		  left.treeJoin(middle, right);
+		  return left;
+	  }
+  }
+  
+  /**
+   * public class Cursor
+   *
+   * A lazy in order cursor over a range of keys. Each step follows the parent links
+   * from the current node (successor / predecessor), so no array and no stack is allocated.
+   * getInfo() returns the info of the item whose key was returned last by nextInt().
+   * insert() searches from the current item, so inserting near the cursor is cheap.
+   */
+  public class Cursor implements PrimitiveIterator.OfInt {
+	  private IAVLNode next;
+	  private IAVLNode current;
+	  private final int lo;
+	  private final int hi;
+	  private final boolean descending;
+	  
+	  private Cursor(IAVLNode first, int lo, int hi, boolean descending) {
+		  this.lo = lo;
+		  this.hi = hi;
+		  this.descending = descending;
+		  this.next = inRange(first) ? first : null;
+	  }
+	  
+	  public boolean hasNext() {
+		  return this.next != null;
+	  }
+	  
+	  public int nextInt() {
+		  if (this.next == null) {
+			  throw new NoSuchElementException();
+		  }
+		  this.current = this.next;
+		  
+		  // successor / predecessor complexity: O(1) amortized over the scan.
+		  IAVLNode following = this.descending ? predecessor(this.current) : successor(this.current);
+		  this.next = inRange(following) ? following : null;
+		  
+		  return this.current.getKey();
+	  }
+	  
+	  // returns the info of the item returned last by nextInt().
+	  public String getInfo() {
+		  if (this.current == null) {
+			  throw new IllegalStateException();
+		  }
+		  return this.current.getValue();
+	  }
+	  
+	  // inserts (k, i) to the tree like AVLTree.insert(), searching from the current item of the cursor
+	  // (the explicit finger). the new item becomes the current item, and the cursor continues after it.
+	  // complexity: O(log(n)) for the search, and cheaper when k and the current item are in a small common subtree.
+	  public int insert(int k, String i) {
+		  long start = Metrics.start();
+		  IAVLNode finger = this.current != null ? this.current : this.next;
+		  IAVLNode node = new AVLNode(k, i);
+		  
+		  // fingerStart complexity: O(log(n)).
+		  int result = insertNode(node, finger == null ? getRoot() : fingerStart(finger, k));
+		  if (result != -1) {
+			  this.current = node;
+			  IAVLNode following = this.descending ? predecessor(node) : successor(node);
+			  this.next = inRange(following) ? following : null;
+		  }
+		  Metrics.finish("insert", k, AVLTree.this.length, start, null);
+		  return result;
+	  }
+	  
+	  private boolean inRange(IAVLNode node) {
+		  return node != null && node.getKey() >= this.lo && node.getKey() <= this.hi;
+	  }
+  }
+  
+  /**
+   * private abstract class NodeSpliterator
+   *
+   * The common part of the key and entry spliterators. It covers the items with
+   * positions [start, end) in the tree, and next is the node at position start.
+   * A split takes the node in the middle position with treeSelect(), so the two
+   * parts always have the same size (+-1), and the sizes are exact.
+   */
+  private abstract class NodeSpliterator {
+	  protected IAVLNode next;
+	  protected int start;
+	  protected final int end;
+	  
+	  protected NodeSpliterator(IAVLNode next, int start, int end) {
+		  this.next = next;
+		  this.start = start;
+		  this.end = end;
+	  }
+	  
+	  // moves to the middle position, and returns it, or -1 if the part is too small to split.
+	  // complexity: O(log(n)).
+	  protected int splitMiddle() {
+		  if (this.end - this.start < 2) {
+			  return -1;
+		  }
+		  int middle = (this.start + this.end) >>> 1;
+		  this.next = treeSelect(middle + 1);
+		  int first = this.start;
+		  this.start = middle;
+		  return first;
+	  }
+	  
+	  // returns the current node and moves to the next one, or null if there are no more nodes.
+	  // complexity: O(1) amortized.
+	  protected IAVLNode advance() {
+		  if (this.start >= this.end) {
+			  return null;
+		  }
+		  IAVLNode node = this.next;
+		  this.start++;
+		  this.next = this.start < this.end ? successor(node) : null;
+		  return node;
+	  }
+	  
+	  public long estimateSize() {
+		  return this.end - this.start;
+	  }
+	  
+	  public int characteristics() {
+		  return Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.ORDERED
+				  | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+	  }
+  }
+  
+  /**
+   * private class KeySpliterator
+   *
+   * A spliterator over the keys of the tree.
+   */
+  private class KeySpliterator extends NodeSpliterator implements Spliterator.OfInt {
+	  private KeySpliterator(IAVLNode next, int start, int end) {
+		  super(next, start, end);
+	  }
+	  
+	  public Spliterator.OfInt trySplit() {
+		  IAVLNode first = this.next;
+		  int firstStart = splitMiddle();
+		  return firstStart == -1 ? null : new KeySpliterator(first, firstStart, this.start);
+	  }
+	  
+	  public boolean tryAdvance(IntConsumer action) {
+		  IAVLNode node = advance();
+		  if (node == null) {
+			  return false;
+		  }
+		  action.accept(node.getKey());
+		  return true;
+	  }
+	  
+	  public Comparator<? super Integer> getComparator() {
+		  // natural order.
+		  return null;
+	  }
+  }
+  
+  /**
+   * private class EntrySpliterator
+   *
+   * A spliterator over the items of the tree, as (key, info) entries.
+   */
+  private class EntrySpliterator extends NodeSpliterator implements Spliterator<Map.Entry<Integer, String>> {
+	  private EntrySpliterator(IAVLNode next, int start, int end) {
+		  super(next, start, end);
+	  }
+	  
+	  public Spliterator<Map.Entry<Integer, String>> trySplit() {
+		  IAVLNode first = this.next;
+		  int firstStart = splitMiddle();
+		  return firstStart == -1 ? null : new EntrySpliterator(first, firstStart, this.start);
+	  }
+	  
+	  public boolean tryAdvance(Consumer<? super Map.Entry<Integer, String>> action) {
+		  IAVLNode node = advance();
+		  if (node == null) {
+			  return false;
+		  }
+		  action.accept(new AbstractMap.SimpleImmutableEntry<Integer, String>(node.getKey(), node.getValue()));
+		  return true;
+	  }
+	  
+	  public Comparator<? super Map.Entry<Integer, String>> getComparator() {
+		  return Map.Entry.comparingByKey();
+	  }
+  }
+  
+  /**
+   * public interface Augmentation
+   *
+   * A value that is kept for every subtree, like a sum, min, max or count of the items.
+   * combine must be associative, and identity must be its neutral value.
+   * of is called when a node is created, and by aggregate() for the nodes on the search paths.
+   * Trees that are joined or merged must use the same augmentation, join() and the set
+   * operations throw IllegalArgumentException otherwise.
+   */
+  public interface Augmentation<A> {
+	  A identity();
+	  A of(int key, String info);
+	  A combine(A left, A right);
+  }
+  
+  /**
+   * public interface ItemConsumer
+   *
+   * An action on an item of the tree, used by parallelForEach().
+   */
+  public interface ItemConsumer {
+	  public void accept(int key, String info);
+  }
+  
+  /**
+   * public interface ItemFunction
+   *
+   * A function of an item of the tree, used by parallelReduce().
+   */
+  public interface ItemFunction<R> {
+	  public R apply(int key, String info);
+  }
+  
+  /**
+   * private static class ForEachTask
+   *
+   * Calls the action for the items in the subtree of node. Subtrees larger than
+   * THRESHOLD fork their left child and scan the right child in the current thread.
+   */
+  private static class ForEachTask extends RecursiveAction {
+	  private static final long serialVersionUID = 1L;
+	  
+	  // subtrees with less items than this are scanned in the current thread.
+	  private static final int THRESHOLD = 1 << 12;
+	  
+	  private final IAVLNode node;
+	  private final ItemConsumer action;
+	  
+	  private ForEachTask(IAVLNode node, ItemConsumer action) {
+		  this.node = node;
+		  this.action = action;
+	  }
+	  
+	  protected void compute() {
+		  IAVLNode x = this.node;
+		  if (x.getSize() <= THRESHOLD) {
+			  forEach(x);
+			  return;
+		  }
+		  
+		  ForEachTask left = new ForEachTask(x.getLeft(), this.action);
+		  ForEachTask right = new ForEachTask(x.getRight(), this.action);
+		  left.fork();
+		  this.action.accept(x.getKey(), x.getValue());
+		  right.compute();
+		  left.join();
+	  }
+	  
+	  // in order scan of the subtree of x.
+	  // complexity: O(size of the subtree).
+	  private void forEach(IAVLNode x) {
+		  while (x.isRealNode()) {
+			  forEach(x.getLeft());
+			  this.action.accept(x.getKey(), x.getValue());
+			  x = x.getRight();
+		  }
+	  }
+  }
+  
+  /**
+   * private static class ReduceTask
+   *
+   * Reduces the items in the subtree of node. Subtrees larger than THRESHOLD
+   * compute their left child in a forked task.
+   */
+  private static class ReduceTask<R> extends RecursiveTask<R> {
+	  private static final long serialVersionUID = 1L;
+	  
+	  // subtrees with less items than this are reduced in the current thread.
+	  private static final int THRESHOLD = 1 << 12;
+	  
+	  private final IAVLNode node;
+	  private final R identity;
+	  private final ItemFunction<R> mapper;
+	  private final BinaryOperator<R> combiner;
+	  
+	  private ReduceTask(IAVLNode node, R identity, ItemFunction<R> mapper, BinaryOperator<R> combiner) {
+		  this.node = node;
+		  this.identity = identity;
+		  this.mapper = mapper;
+		  this.combiner = combiner;
+	  }
+	  
+	  protected R compute() {
+		  IAVLNode x = this.node;
+		  if (x.getSize() <= THRESHOLD) {
+			  return reduce(x);
+		  }
+		  
+		  ReduceTask<R> left = new ReduceTask<R>(x.getLeft(), this.identity, this.mapper, this.combiner);
+		  ReduceTask<R> right = new ReduceTask<R>(x.getRight(), this.identity, this.mapper, this.combiner);
+		  left.fork();
+		  R rightResult = right.compute();
+		  R result = this.combiner.apply(this.mapper.apply(x.getKey(), x.getValue()), rightResult);
+		  return this.combiner.apply(left.join(), result);
+	  }
+	  
+	  // in order reduce of the subtree of x.
+	  // complexity: O(size of the subtree).
+	  private R reduce(IAVLNode x) {
+		  if (!x.isRealNode()) {
+			  return this.identity;
+		  }
+		  R result = this.combiner.apply(reduce(x.getLeft()), this.mapper.apply(x.getKey(), x.getValue()));
+		  return this.combiner.apply(result, reduce(x.getRight()));
+	  }
+  }
+  
+  /**
+   * private static final class NodeIndex
+   *
+   * A hash table from the keys of a tree to its nodes, with open addressing and
+   * linear probing. The keys are kept in an int[] next to the nodes, so a probe
+   * does not read the node. At most half of the slots are used.
+   */
+  private static final class NodeIndex {
+	  private static final int MIN_CAPACITY = 16;
+
+	  private int[] keys;
+	  private IAVLNode[] nodes;
+	  private int count;
+	  private int shift;
+
+	  // creates an empty index with room for expected keys.
+	  NodeIndex(int expected) {
+		  int capacity = MIN_CAPACITY;
+		  while (capacity < 2 * expected) {
+			  capacity <<= 1;
+		  }
+		  allocate(capacity);
+	  }
+
+	  // returns the node with key k, or null if there is no such node.
+	  // complexity: O(1) expected.
+	  IAVLNode get(int k) {
+		  int mask = this.nodes.length - 1;
+		  for (int i = slot(k); ; i = (i + 1) & mask) {
+			  IAVLNode node = this.nodes[i];
+			  if (node == null || this.keys[i] == k) {
+				  return node;
+			  }
+		  }
+	  }
+
+	  // adds node, or replaces the node with the same key.
+	  // complexity: O(1) expected (amortized, with the resizes).
+	  void put(IAVLNode node) {
+		  if (2 * (this.count + 1) > this.nodes.length) {
+			  resize(2 * this.nodes.length);
+		  }
+		  int k = node.getKey();
+		  int mask = this.nodes.length - 1;
+		  int i = slot(k);
+		  while (this.nodes[i] != null && this.keys[i] != k) {
+			  i = (i + 1) & mask;
+		  }
+		  if (this.nodes[i] == null) {
+			  this.count++;
+		  }
+		  this.keys[i] = k;
+		  this.nodes[i] = node;
+	  }
+
+	  // removes the node with key k, if it is there.
+	  // the entries after it in the same run are moved back, so no tombstones are needed.
+	  // complexity: O(1) expected.
+	  void remove(int k) {
+		  int mask = this.nodes.length - 1;
+		  int hole = slot(k);
+		  while (this.nodes[hole] != null && this.keys[hole] != k) {
+			  hole = (hole + 1) & mask;
+		  }
+		  if (this.nodes[hole] == null) {
+			  return;
+		  }
+		  for (int j = (hole + 1) & mask; this.nodes[j] != null; j = (j + 1) & mask) {
+			  // the entry at j can move to the hole if its home slot is not after the hole.
+			  int home = slot(this.keys[j]);
+			  if (((j - home) & mask) >= ((j - hole) & mask)) {
+				  this.keys[hole] = this.keys[j];
+				  this.nodes[hole] = this.nodes[j];
+				  hole = j;
+			  }
+		  }
+		  this.nodes[hole] = null;
+		  this.count--;
+	  }
+
+	  // the home slot of k (Fibonacci hashing).
+	  // complexity: O(1).
+	  private int slot(int k) {
+		  return (k * 0x9E3779B9) >>> this.shift;
+	  }
+
+	  // complexity: O(capacity).
+	  private void allocate(int capacity) {
+		  this.keys = new int[capacity];
+		  this.nodes = new IAVLNode[capacity];
+		  this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+	  }
+
+	  // moves the entries to a table with capacity slots.
+	  // complexity: O(capacity).
+	  private void resize(int capacity) {
+		  IAVLNode[] old = this.nodes;
+		  allocate(capacity);
+		  this.count = 0;
+		  for (IAVLNode node : old) {
+			  if (node != null) {
+				  put(node);
+			  }
+		  }
+	  }
+  }
+  
+  /**
+   * private class VirtualNode
+   *
+   * The shared virtual node of the tree. Every leaf points to the same
+   * instance, so its parent, children and height are never written.
+   */
+  private class VirtualNode extends AVLNode {
+	  public void setLeft(IAVLNode node) {}
+	  public void setRight(IAVLNode node) {}
+	  public void setParent(IAVLNode node) {}
+	  public void setHeight(int height) {}
+	  public void updateSize() {}
+  }
+
+  /**
+   * public static class ArrayAVLTree
+   *
+   * A second AVL tree engine with the same public API as AVLTree.
+   * Instead of AVLNode objects, the nodes are indices into parallel arrays
+   * (keys, info, left, right, parent, height and size), so going down the tree
+   * reads primitive arrays and does not call the IAVLNode interface.
+   * Index 0 is the virtual node, all leaves point to it.
+   * Trees created by split() share the arrays of the original tree.
+   */
+  public static class ArrayAVLTree {
+	  // index of the virtual node.
+	  private static final int NIL = 0;
+
+	  private Store store;
+	  private int root;
+	  private int length;
+
+	  // creates an empty tree.
+	  public ArrayAVLTree() {
+		  this(new Store(16), NIL);
+	  }
+
+	  // creates a tree with root node, in the given arrays.
+	  private ArrayAVLTree(Store store, int root) {
+		  this.store = store;
+		  this.root = root;
+		  this.store.parent[root] = NIL;
+		  this.length = store.size[root];
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * Returns true if and only if the tree is empty.
+	   */
+	  public boolean empty() {
+		  // COMPLEXITY: O(1).
+		  return this.root == NIL;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  // treeSearch complexity: O(log(n)).
+		  int x = treeSearch(k);
+
+		  return x == NIL ? null : this.store.info[x];
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i to the AVL tree.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k already exists in the tree.
+	   */
+	  public int insert(int k, String i) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Store s = this.store;
+
+		  // insert node as root.
+		  if (this.root == NIL) {
+			  this.root = s.allocate(k, i);
+			  this.length++;
+			  return 0;
+		  }
+
+		  // find the parent of the new node.
+		  int parent = this.root;
+		  while (true) {
+			  if (k == s.keys[parent]) {
+				  return -1;
+			  }
+			  int next = k < s.keys[parent] ? s.left[parent] : s.right[parent];
+			  if (next == NIL) {
+				  break;
+			  }
+			  parent = next;
+		  }
+
+		  // allocate may replace the arrays, so they are read again after it.
+		  int x = s.allocate(k, i);
+		  s.parent[x] = parent;
+		  if (k < s.keys[parent]) {
+			  s.left[parent] = x;
+		  }
+		  else {
+			  s.right[parent] = x;
+		  }
+		  this.length++;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(parent, false);
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k from the binary tree, if it is there.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k was not found in the tree.
+	   */
+	  public int delete(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Store s = this.store;
+		  int z = treeSearch(k);
+		  if (z == NIL) {
+			  return -1;
+		  }
+
+		  // the node from which the tree is rebalanced.
+		  int from;
+		  if (s.left[z] == NIL || s.right[z] == NIL) {
+			  // z has at most one child, replace z with it.
+			  from = s.parent[z];
+			  replace(z, s.left[z] != NIL ? s.left[z] : s.right[z]);
+		  }
+		  else {
+			  // z has two children, replace z with its successor.
+			  int y = s.right[z];
+			  while (s.left[y] != NIL) {
+				  y = s.left[y];
+			  }
+			  if (s.parent[y] == z) {
+				  from = y;
+			  }
+			  else {
+				  from = s.parent[y];
+				  replace(y, s.right[y]);
+				  s.right[y] = s.right[z];
+				  s.parent[s.right[y]] = y;
+			  }
+			  replace(z, y);
+			  s.left[y] = s.left[z];
+			  s.parent[s.left[y]] = y;
+			  s.height[y] = s.height[z];
+		  }
+		  s.release(z);
+		  this.length--;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(from, true);
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * Returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String min() {
+		  // COMPLEXITY: O(log(n)).
+
+		  if (this.empty()) {
+			  return null;
+		  }
+		  return this.store.info[min(this.root)];
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * Returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String max() {
+		  // COMPLEXITY: O(log(n)).
+
+		  if (this.empty()) {
+			  return null;
+		  }
+		  return this.store.info[max(this.root)];
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  int[] keys = new int[this.length];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (int x = this.empty() ? NIL : min(this.root); x != NIL; x = successor(x)) {
+			  keys[i++] = this.store.keys[x];
+		  }
+		  return keys;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * Returns an array which contains all info in the tree,
+	   * sorted by their respective keys,
+	   * or an empty array if the tree is empty.
+	   */
+	  public String[] infoToArray() {
+		  // COMPLEXITY: O(n).
+
+		  String[] values = new String[this.length];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (int x = this.empty() ? NIL : min(this.root); x != NIL; x = successor(x)) {
+			  values[i++] = this.store.info[x];
+		  }
+		  return values;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return this.length;
+	  }
+
+	  // get the rank of the tree.
+	  // complexity: O(1).
+	  public int getRank() {
+		  return this.store.height[this.root];
+	  }
+
+	  /**
+	   * public ArrayAVLTree[] split(int x)
+	   *
+	   * splits the tree into 2 trees according to the key x.
+	   * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+	   * t1 and t2 use the arrays of the tree, and the tree is empty after the split.
+	   *
+	   * precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
+	   * postcondition: none
+	   */
+	  public ArrayAVLTree[] split(int x) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Store s = this.store;
+		  int xNode = treeSearch(x);
+
+		  int left = s.left[xNode];
+		  int right = s.right[xNode];
+		  s.parent[left] = NIL;
+		  s.parent[right] = NIL;
+
+		  // join the subtrees on the path to the root, from the bottom up.
+		  int child = xNode;
+		  int parent = s.parent[xNode];
+		  while (parent != NIL) {
+			  int next = s.parent[parent];
+			  if (s.right[parent] == child) {
+				  int parentLeft = s.left[parent];
+				  s.parent[parentLeft] = NIL;
+				  left = joinNodes(parentLeft, parent, left);
+			  }
+			  else {
+				  int parentRight = s.right[parent];
+				  s.parent[parentRight] = NIL;
+				  right = joinNodes(right, parent, parentRight);
+			  }
+			  child = parent;
+			  parent = next;
+		  }
+		  s.release(xNode);
+
+		  this.root = NIL;
+		  this.length = 0;
+
+		  return new ArrayAVLTree[] {new ArrayAVLTree(s, left), new ArrayAVLTree(s, right)};
+	  }
+
+	  /**
+	   * public int join(int k, String i, ArrayAVLTree t)
+	   *
+	   * joins t and a new item (k, i) with the tree. t is empty after the join.
+	   * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+	   * If t does not use the arrays of the tree, its items are moved first, in O(|t|),
+	   * and their indices in the arrays of t are released.
+	   *
+	   * precondition: keys(t) < k < keys() or keys(t) > k > keys(). t/tree might be empty (rank = -1).
+	   * postcondition: none
+	   */
+	  public int join(int k, String i, ArrayAVLTree t) {
+		  // COMPLEXITY: O(|tree.rank - t.rank| + 1).
+
+		  int returnValue = Math.abs(this.getRank() - t.getRank()) + 1;
+
+		  int tRoot = t.root;
+		  if (t.store != this.store && tRoot != NIL) {
+			  // moveTree complexity: O(|t|).
+			  tRoot = moveTree(t.store, tRoot, NIL);
+		  }
+
+		  // determine if t's keys are smaller than k.
+		  boolean tSmaller = tRoot != NIL ? this.store.keys[tRoot] < k
+				  : this.root != NIL && this.store.keys[this.root] > k;
+
+		  int x = this.store.allocate(k, i);
+		  this.root = tSmaller ? joinNodes(tRoot, x, this.root) : joinNodes(this.root, x, tRoot);
+		  this.length += t.length + 1;
+
+		  t.root = NIL;
+		  t.length = 0;
+
+		  return returnValue;
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // finds node with key k.
+	  // returns NIL if there is no such key in the tree.
+	  // complexity: O(log(n)).
+	  private int treeSearch(int k) {
+		  int[] keys = this.store.keys;
+		  int[] left = this.store.left;
+		  int[] right = this.store.right;
+		  int x = this.root;
+		  while (x != NIL) {
+			  int key = keys[x];
+			  if (key == k) {
+				  return x;
+			  }
+			  x = key > k ? left[x] : right[x];
+		  }
+		  return NIL;
+	  }
+
+	  // finds node with minimal key in the subtree of x.
+	  // complexity: O(log(n)).
+	  private int min(int x) {
+		  while (this.store.left[x] != NIL) {
+			  x = this.store.left[x];
+		  }
+		  return x;
+	  }
+
+	  // finds node with maximal key in the subtree of x.
+	  // complexity: O(log(n)).
+	  private int max(int x) {
+		  while (this.store.right[x] != NIL) {
+			  x = this.store.right[x];
+		  }
+		  return x;
+	  }
+
+	  // finds the node with the next key, or NIL if x has the largest key.
+	  // complexity: O(log(n)), O(1) amortized over an in order scan.
+	  private int successor(int x) {
+		  Store s = this.store;
+		  if (s.right[x] != NIL) {
+			  return min(s.right[x]);
+		  }
+		  int parent = s.parent[x];
+		  while (parent != NIL && s.right[parent] == x) {
+			  x = parent;
+			  parent = s.parent[x];
+		  }
+		  return parent;
+	  }
+
+	  // puts node v in the place of node u (v might be NIL).
+	  // complexity: O(1).
+	  private void replace(int u, int v) {
+		  Store s = this.store;
+		  int parent = s.parent[u];
+		  replaceChild(parent, u, v);
+		  if (v != NIL) {
+			  s.parent[v] = parent;
+		  }
+	  }
+
+	  // replaces the child u of parent with v. if parent is NIL, v becomes the root.
+	  // complexity: O(1).
+	  private void replaceChild(int parent, int u, int v) {
+		  Store s = this.store;
+		  if (parent == NIL) {
+			  this.root = v;
+		  }
+		  else if (s.left[parent] == u) {
+			  s.left[parent] = v;
+		  }
+		  else {
+			  s.right[parent] = v;
+		  }
+	  }
+
+	  // updates the height and size of x according to its children.
+	  // complexity: O(1).
+	  private void update(int x) {
+		  Store s = this.store;
+		  int l = s.left[x], r = s.right[x];
+		  s.height[x] = (byte) (Math.max(s.height[l], s.height[r]) + 1);
+		  s.size[x] = s.size[l] + s.size[r] + 1;
+	  }
+
+	  // rotates x above its parent.
+	  // complexity: O(1).
+	  private void rotateUp(int x) {
+		  Store s = this.store;
+		  int parent = s.parent[x];
+		  int grandParent = s.parent[parent];
+		  if (s.left[parent] == x) {
+			  int middle = s.right[x];
+			  s.left[parent] = middle;
+			  if (middle != NIL) {
+				  s.parent[middle] = parent;
+			  }
+			  s.right[x] = parent;
+		  }
+		  else {
+			  int middle = s.left[x];
+			  s.right[parent] = middle;
+			  if (middle != NIL) {
+				  s.parent[middle] = parent;
+			  }
+			  s.left[x] = parent;
+		  }
+		  s.parent[parent] = x;
+		  s.parent[x] = grandParent;
+		  replaceChild(grandParent, parent, x);
+
+		  // parent is now the child of x, so it is updated first.
+		  update(parent);
+		  update(x);
+	  }
+
+	  // rebalance tree from x up to the root.
+	  // rotations stop once the height of a subtree did not change, sizes are updated up to the root.
+	  // returns the number of re-balancing operations, counted like AVLTree: a height change is 1,
+	  // a rotation is 2 after an insertion and 3 after a deletion (with the height changes it makes),
+	  // and a double rotation is 5.
+	  // complexity: O(log(n)).
+	  private int rebalanceUp(int x, boolean deletion) {
+		  Store s = this.store;
+		  int counter = 0;
+		  int rotation = deletion ? 3 : 2;
+
+		  while (x != NIL) {
+			  int oldHeight = s.height[x];
+			  update(x);
+			  int bf = s.height[s.right[x]] - s.height[s.left[x]];
+			  if (bf > 1) {
+				  int right = s.right[x];
+				  if (s.height[s.left[right]] > s.height[s.right[right]]) {
+					  // double rotation.
+					  int son = s.left[right];
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(right);
+					  x = right;
+					  counter += rotation;
+				  }
+			  }
+			  else if (bf < -1) {
+				  int left = s.left[x];
+				  if (s.height[s.right[left]] > s.height[s.left[left]]) {
+					  // double rotation.
+					  int son = s.right[left];
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(left);
+					  x = left;
+					  counter += rotation;
+				  }
+			  }
+			  else if (s.height[x] != oldHeight) {
+				  // promotion or demotion.
+				  counter++;
+			  }
+
+			  if (s.height[x] == oldHeight) {
+				  break;
+			  }
+			  x = s.parent[x];
+		  }
+
+		  // the rest of the path only needs the sizes.
+		  while (x != NIL) {
+			  x = s.parent[x];
+			  if (x != NIL) {
+				  s.size[x] = s.size[s.left[x]] + s.size[s.right[x]] + 1;
+			  }
+		  }
+		  return counter;
+	  }
+
+	  // joins the subtrees left < x < right (left and right might be NIL), and returns the new root.
+	  // complexity: O(|height(left) - height(right)| + 1).
+	  private int joinNodes(int left, int x, int right) {
+		  Store s = this.store;
+		  int leftHeight = s.height[left];
+		  int rightHeight = s.height[right];
+
+		  // like the join of AVLTree, x is the new root only if the heights are equal,
+		  // so both engines build the same shapes and count the same re-balancing operations.
+		  if (leftHeight == rightHeight) {
+			  // x is the new root.
+			  link(x, left, right);
+			  s.parent[x] = NIL;
+			  return x;
+		  }
+
+		  if (leftHeight > rightHeight) {
+			  // find node in the right branch of left with the same height as right (or one less).
+			  int joined = left;
+			  int joinedParent = NIL;
+			  while (s.height[joined] > rightHeight) {
+				  joinedParent = joined;
+				  joined = s.right[joined];
+			  }
+			  // insert x between joined and its parent.
+			  link(x, joined, right);
+			  s.parent[x] = joinedParent;
+			  s.right[joinedParent] = x;
+			  this.root = left;
+		  }
+		  else {
+			  // find node in the left branch of right with the same height as left (or one less).
+			  int joined = right;
+			  int joinedParent = NIL;
+			  while (s.height[joined] > leftHeight) {
+				  joinedParent = joined;
+				  joined = s.left[joined];
+			  }
+			  // insert x between its parent and joined.
+			  link(x, left, joined);
+			  s.parent[x] = joinedParent;
+			  s.left[joinedParent] = x;
+			  this.root = right;
+		  }
+
+		  // rebalanceUp may rotate the root, so the root is read after it.
+		  rebalanceUp(s.parent[x], false);
+		  return this.root;
+	  }
+
+	  // sets the children of x and updates its height and size.
+	  // complexity: O(1).
+	  private void link(int x, int left, int right) {
+		  Store s = this.store;
+		  s.left[x] = left;
+		  s.right[x] = right;
+		  if (left != NIL) {
+			  s.parent[left] = x;
+		  }
+		  if (right != NIL) {
+			  s.parent[right] = x;
+		  }
+		  update(x);
+	  }
+
+	  // moves the subtree of x in other to the arrays of this tree, and returns its new root.
+	  // the indices of the subtree in other are released.
+	  // complexity: O(size of the subtree).
+	  private int moveTree(Store other, int x, int parent) {
+		  if (x == NIL) {
+			  return NIL;
+		  }
+		  int copy = this.store.allocate(other.keys[x], other.info[x]);
+		  this.store.parent[copy] = parent;
+		  int left = moveTree(other, other.left[x], copy);
+		  int right = moveTree(other, other.right[x], copy);
+		  other.release(x);
+		  this.store.left[copy] = left;
+		  this.store.right[copy] = right;
+		  update(copy);
+		  return copy;
+	  }
+
+	  /**
+	   * private static class Store
+	   *
+	   * The parallel arrays of the nodes. Deleted nodes are kept in a free list
+	   * (linked through the right array) and are reused by allocate().
+	   */
+	  private static class Store {
+		  private int[] keys;
+		  private String[] info;
+		  private int[] left;
+		  private int[] right;
+		  private int[] parent;
+		  private byte[] height;
+		  private int[] size;
+
+		  // next index that was never used, and the first free index.
+		  private int next = 1;
+		  private int free = NIL;
+
+		  private Store(int capacity) {
+			  this.keys = new int[capacity];
+			  this.info = new String[capacity];
+			  this.left = new int[capacity];
+			  this.right = new int[capacity];
+			  this.parent = new int[capacity];
+			  this.height = new byte[capacity];
+			  this.size = new int[capacity];
+
+			  // the virtual node.
+			  this.height[NIL] = -1;
+			  this.size[NIL] = 0;
+		  }
+
+		  // returns the index of a new leaf with key k and info i.
+		  // complexity: O(1) amortized (the arrays are doubled when full).
+		  private int allocate(int k, String i) {
+			  int x;
+			  if (this.free != NIL) {
+				  x = this.free;
+				  this.free = this.right[x];
+			  }
+			  else {
+				  if (this.next == this.keys.length) {
+					  grow();
+				  }
+				  x = this.next++;
+			  }
+			  this.keys[x] = k;
+			  this.info[x] = i;
+			  this.left[x] = NIL;
+			  this.right[x] = NIL;
+			  this.parent[x] = NIL;
+			  this.height[x] = 0;
+			  this.size[x] = 1;
+			  return x;
+		  }
+
+		  // adds x to the free list.
+		  // complexity: O(1).
+		  private void release(int x) {
+			  this.info[x] = null;
+			  this.right[x] = this.free;
+			  this.free = x;
+		  }
+
+		  // doubles the capacity of the arrays.
+		  // complexity: O(n).
+		  private void grow() {
+			  int capacity = this.keys.length * 2;
+			  this.keys = Arrays.copyOf(this.keys, capacity);
+			  this.info = Arrays.copyOf(this.info, capacity);
+			  this.left = Arrays.copyOf(this.left, capacity);
+			  this.right = Arrays.copyOf(this.right, capacity);
+			  this.parent = Arrays.copyOf(this.parent, capacity);
+			  this.height = Arrays.copyOf(this.height, capacity);
+			  this.size = Arrays.copyOf(this.size, capacity);
+		  }
+	  }
+  }
+  
+  /**
+   * public static class OffHeapAVLTree
+   *
+   * An AVL tree whose nodes and values are stored outside of the java heap,
+   * in direct buffers or in a memory-mapped file, so the GC never scans them.
+   * The memory is split into chunks of CHUNK_BYTES. A node is a record of NODE_BYTES
+   * (key, left, right, parent, height and the offset of its value), and a value is
+   * stored as its capacity and its length followed by its UTF-8 bytes. Index 0 is the virtual node.
+   * Deleted nodes are reused. The records of deleted values are kept in free lists by the
+   * power of two of their capacity, and a new value takes a record from the first list
+   * whose records are large enough.
+   * A memory-mapped file is scratch space: it is truncated when the tree is created,
+   * and a tree cannot be reopened from it.
+   * Direct buffers are limited by -XX:MaxDirectMemorySize, which is the -Xmx heap size by default,
+   * so with a small heap a large tree fails with "OutOfMemoryError: Direct buffer memory".
+   * Set the flag above the size of the tree, or use a memory-mapped file, which is not limited by it.
+   */
+  public static class OffHeapAVLTree {
+	  // index of the virtual node.
+	  private static final int NIL = 0;
+
+	  // layout of a node record.
+	  private static final int KEY = 0;
+	  private static final int LEFT = 4;
+	  private static final int RIGHT = 8;
+	  private static final int PARENT = 12;
+	  private static final int HEIGHT = 16;
+	  private static final int VALUE = 24;
+	  private static final int NODE_SHIFT = 5;
+	  private static final int NODE_BYTES = 1 << NODE_SHIFT;
+
+	  // size of a chunk of memory, for both nodes and values.
+	  private static final int CHUNK_SHIFT = 22;
+	  private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+	  private static final int NODES_SHIFT = CHUNK_SHIFT - NODE_SHIFT;
+	  private static final int NODES_MASK = (1 << NODES_SHIFT) - 1;
+
+	  // a value record is its capacity, its length and its bytes. a free record
+	  // keeps the position of the next free record of its list in its bytes.
+	  private static final int VALUE_HEADER = 8;
+	  private static final int MIN_CAPACITY = 8;
+
+	  // the file the chunks are mapped from, or null for direct buffers.
+	  private final FileChannel channel;
+	  private long fileSize;
+
+	  private ByteBuffer[] nodeChunks = new ByteBuffer[0];
+	  private ByteBuffer[] valueChunks = new ByteBuffer[0];
+	  private int nextNode = 1;
+	  private int freeNode = NIL;
+	  private int valuePosition = CHUNK_BYTES;
+	  // the first free value record with capacity 2^c, or -1. the records of the largest capacity,
+	  // CHUNK_BYTES - VALUE_HEADER, are in the last list.
+	  private final long[] freeValues = new long[CHUNK_SHIFT + 1];
+
+	  private int root = NIL;
+	  private int length;
+
+	  // creates an empty tree in direct buffers.
+	  public OffHeapAVLTree() {
+		  this.channel = null;
+		  initVirtualNode();
+	  }
+
+	  // creates an empty tree in a memory-mapped file, used as scratch space.
+	  // the file is overwritten, and the tree cannot be reopened from it.
+	  public OffHeapAVLTree(Path file) throws IOException {
+		  this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				  StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		  initVirtualNode();
+	  }
+
+	  /**
+	   * public void close()
+	   *
+	   * Closes the memory-mapped file, if there is one.
+	   */
+	  public void close() throws IOException {
+		  if (this.channel != null) {
+			  this.channel.close();
+		  }
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * Returns true if and only if the tree is empty.
+	   */
+	  public boolean empty() {
+		  // COMPLEXITY: O(1).
+		  return this.root == NIL;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  // treeSearch complexity: O(log(n)).
+		  int x = treeSearch(k);
+
+		  return x == NIL ? null : value(x);
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i to the AVL tree.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k already exists in the tree.
+	   */
+	  public int insert(int k, String i) {
+		  // COMPLEXITY: O(log(n)).
+
+		  // insert node as root.
+		  if (this.root == NIL) {
+			  this.root = allocate(k, i);
+			  this.length++;
+			  return 0;
+		  }
+
+		  // find the parent of the new node.
+		  int parent = this.root;
+		  while (true) {
+			  int key = key(parent);
+			  if (k == key) {
+				  return -1;
+			  }
+			  int next = k < key ? left(parent) : right(parent);
+			  if (next == NIL) {
+				  break;
+			  }
+			  parent = next;
+		  }
+
+		  int x = allocate(k, i);
+		  setParent(x, parent);
+		  if (k < key(parent)) {
+			  setLeft(parent, x);
+		  }
+		  else {
+			  setRight(parent, x);
+		  }
+		  this.length++;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(parent, false);
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k from the binary tree, if it is there.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k was not found in the tree.
+	   */
+	  public int delete(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int z = treeSearch(k);
+		  if (z == NIL) {
+			  return -1;
+		  }
+
+		  // the node from which the tree is rebalanced.
+		  int from;
+		  if (left(z) == NIL || right(z) == NIL) {
+			  // z has at most one child, replace z with it.
+			  from = parent(z);
+			  replace(z, left(z) != NIL ? left(z) : right(z));
+		  }
+		  else {
+			  // z has two children, replace z with its successor.
+			  int y = min(right(z));
+			  if (parent(y) == z) {
+				  from = y;
+			  }
+			  else {
+				  from = parent(y);
+				  replace(y, right(y));
+				  setRight(y, right(z));
+				  setParent(right(y), y);
+			  }
+			  replace(z, y);
+			  setLeft(y, left(z));
+			  setParent(left(y), y);
+			  setHeight(y, height(z));
+		  }
+		  release(z);
+		  this.length--;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(from, true);
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * Returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String min() {
+		  // COMPLEXITY: O(log(n)).
+		  return this.empty() ? null : value(min(this.root));
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * Returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String max() {
+		  // COMPLEXITY: O(log(n)).
+		  return this.empty() ? null : value(max(this.root));
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  int[] keys = new int[this.length];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (int x = this.empty() ? NIL : min(this.root); x != NIL; x = successor(x)) {
+			  keys[i++] = key(x);
+		  }
+		  return keys;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * Returns an array which contains all info in the tree,
+	   * sorted by their respective keys,
+	   * or an empty array if the tree is empty.
+	   */
+	  public String[] infoToArray() {
+		  // COMPLEXITY: O(n).
+
+		  String[] values = new String[this.length];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (int x = this.empty() ? NIL : min(this.root); x != NIL; x = successor(x)) {
+			  values[i++] = value(x);
+		  }
+		  return values;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return this.length;
+	  }
+
+	  // get the rank of the tree.
+	  // complexity: O(1).
+	  public int getRank() {
+		  return height(this.root);
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // finds node with key k.
+	  // returns NIL if there is no such key in the tree.
+	  // complexity: O(log(n)).
+	  private int treeSearch(int k) {
+		  int x = this.root;
+		  while (x != NIL) {
+			  int key = key(x);
+			  if (key == k) {
+				  return x;
+			  }
+			  x = key > k ? left(x) : right(x);
+		  }
+		  return NIL;
+	  }
+
+	  // finds node with minimal key in the subtree of x.
+	  // complexity: O(log(n)).
+	  private int min(int x) {
+		  while (left(x) != NIL) {
+			  x = left(x);
+		  }
+		  return x;
+	  }
+
+	  // finds node with maximal key in the subtree of x.
+	  // complexity: O(log(n)).
+	  private int max(int x) {
+		  while (right(x) != NIL) {
+			  x = right(x);
+		  }
+		  return x;
+	  }
+
+	  // finds the node with the next key, or NIL if x has the largest key.
+	  // complexity: O(log(n)), O(1) amortized over an in order scan.
+	  private int successor(int x) {
+		  if (right(x) != NIL) {
+			  return min(right(x));
+		  }
+		  int parent = parent(x);
+		  while (parent != NIL && right(parent) == x) {
+			  x = parent;
+			  parent = parent(x);
+		  }
+		  return parent;
+	  }
+
+	  // puts node v in the place of node u (v might be NIL).
+	  // complexity: O(1).
+	  private void replace(int u, int v) {
+		  int parent = parent(u);
+		  replaceChild(parent, u, v);
+		  if (v != NIL) {
+			  setParent(v, parent);
+		  }
+	  }
+
+	  // replaces the child u of parent with v. if parent is NIL, v becomes the root.
+	  // complexity: O(1).
+	  private void replaceChild(int parent, int u, int v) {
+		  if (parent == NIL) {
+			  this.root = v;
+		  }
+		  else if (left(parent) == u) {
+			  setLeft(parent, v);
+		  }
+		  else {
+			  setRight(parent, v);
+		  }
+	  }
+
+	  // updates the height of x according to its children.
+	  // complexity: O(1).
+	  private void updateHeight(int x) {
+		  setHeight(x, Math.max(height(left(x)), height(right(x))) + 1);
+	  }
+
+	  // rotates x above its parent.
+	  // complexity: O(1).
+	  private void rotateUp(int x) {
+		  int parent = parent(x);
+		  int grandParent = parent(parent);
+		  if (left(parent) == x) {
+			  int middle = right(x);
+			  setLeft(parent, middle);
+			  if (middle != NIL) {
+				  setParent(middle, parent);
+			  }
+			  setRight(x, parent);
+		  }
+		  else {
+			  int middle = left(x);
+			  setRight(parent, middle);
+			  if (middle != NIL) {
+				  setParent(middle, parent);
+			  }
+			  setLeft(x, parent);
+		  }
+		  setParent(parent, x);
+		  setParent(x, grandParent);
+		  replaceChild(grandParent, parent, x);
+
+		  // parent is now the child of x, so it is updated first.
+		  updateHeight(parent);
+		  updateHeight(x);
+	  }
+
+	  // rebalance tree from x up to the root, stops once the height of a subtree did not change.
+	  // returns the number of re-balancing operations, counted like AVLTree: a height change is 1,
+	  // a rotation is 2 after an insertion and 3 after a deletion, and a double rotation is 5.
+	  // complexity: O(log(n)).
+	  private int rebalanceUp(int x, boolean deletion) {
+		  int counter = 0;
+		  int rotation = deletion ? 3 : 2;
+
+		  while (x != NIL) {
+			  int oldHeight = height(x);
+			  updateHeight(x);
+			  int bf = height(right(x)) - height(left(x));
+			  if (bf > 1) {
+				  int right = right(x);
+				  if (height(left(right)) > height(right(right))) {
+					  // double rotation.
+					  int son = left(right);
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(right);
+					  x = right;
+					  counter += rotation;
+				  }
+			  }
+			  else if (bf < -1) {
+				  int left = left(x);
+				  if (height(right(left)) > height(left(left))) {
+					  // double rotation.
+					  int son = right(left);
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(left);
+					  x = left;
+					  counter += rotation;
+				  }
+			  }
+			  else if (height(x) != oldHeight) {
+				  // promotion or demotion.
+				  counter++;
+			  }
+
+			  if (height(x) == oldHeight) {
+				  break;
+			  }
+			  x = parent(x);
+		  }
+		  return counter;
+	  }
+
+	  // the chunk and the offset of the record of node x.
+	  private ByteBuffer chunk(int x) {
+		  return this.nodeChunks[x >>> NODES_SHIFT];
+	  }
+	  private static int offset(int x) {
+		  return (x & NODES_MASK) << NODE_SHIFT;
+	  }
+
+	  private int key(int x) {
+		  return chunk(x).getInt(offset(x) + KEY);
+	  }
+	  private int left(int x) {
+		  return chunk(x).getInt(offset(x) + LEFT);
+	  }
+	  private int right(int x) {
+		  return chunk(x).getInt(offset(x) + RIGHT);
+	  }
+	  private int parent(int x) {
+		  return chunk(x).getInt(offset(x) + PARENT);
+	  }
+	  private int height(int x) {
+		  return chunk(x).getInt(offset(x) + HEIGHT);
+	  }
+	  private void setLeft(int x, int node) {
+		  chunk(x).putInt(offset(x) + LEFT, node);
+	  }
+	  private void setRight(int x, int node) {
+		  chunk(x).putInt(offset(x) + RIGHT, node);
+	  }
+	  private void setParent(int x, int node) {
+		  chunk(x).putInt(offset(x) + PARENT, node);
+	  }
+	  private void setHeight(int x, int height) {
+		  chunk(x).putInt(offset(x) + HEIGHT, height);
+	  }
+
+	  // reads the value of node x.
+	  // complexity: O(length of the value).
+	  private String value(int x) {
+		  long position = chunk(x).getLong(offset(x) + VALUE);
+		  if (position < 0) {
+			  return null;
+		  }
+		  ByteBuffer chunk = valueChunk(position);
+		  int start = valueOffset(position);
+		  byte[] bytes = new byte[chunk.getInt(start + 4)];
+		  chunk.get(start + VALUE_HEADER, bytes);
+		  return new String(bytes, StandardCharsets.UTF_8);
+	  }
+
+	  // the chunk and the offset of the value record at position.
+	  private ByteBuffer valueChunk(long position) {
+		  return this.valueChunks[(int) (position >>> CHUNK_SHIFT)];
+	  }
+	  private static int valueOffset(long position) {
+		  return (int) (position & (CHUNK_BYTES - 1));
+	  }
+
+	  // writes a value to the value chunks and returns its position, or -1 for null.
+	  // a free record is reused if one is large enough, otherwise the value is appended.
+	  // complexity: O(length of the value).
+	  private long writeValue(String i) {
+		  if (i == null) {
+			  return -1;
+		  }
+		  byte[] bytes = i.getBytes(StandardCharsets.UTF_8);
+		  if (bytes.length + VALUE_HEADER > CHUNK_BYTES) {
+			  throw new IllegalArgumentException("value is longer than " + (CHUNK_BYTES - VALUE_HEADER) + " bytes");
+		  }
+		  // the capacity is rounded up to a power of two, so a free record serves any value of its class.
+		  int capacity = Math.max(Integer.highestOneBit(bytes.length - 1) << 1, MIN_CAPACITY);
+		  capacity = Math.min(capacity, CHUNK_BYTES - VALUE_HEADER);
+
+		  // every record in the list of sizeClass(capacity) and above is large enough.
+		  long position = -1;
+		  for (int c = sizeClass(capacity); c < this.freeValues.length; c++) {
+			  if (this.freeValues[c] != -1) {
+				  position = this.freeValues[c];
+				  this.freeValues[c] = valueChunk(position).getLong(valueOffset(position) + VALUE_HEADER);
+				  break;
+			  }
+		  }
+
+		  if (position == -1) {
+			  if (this.valuePosition + VALUE_HEADER + capacity > CHUNK_BYTES) {
+				  // the rest of the current chunk is not used.
+				  this.valueChunks = Arrays.copyOf(this.valueChunks, this.valueChunks.length + 1);
+				  this.valueChunks[this.valueChunks.length - 1] = newChunk();
+				  this.valuePosition = 0;
+			  }
+			  position = ((long) (this.valueChunks.length - 1) << CHUNK_SHIFT) | this.valuePosition;
+			  valueChunk(position).putInt(this.valuePosition, capacity);
+			  this.valuePosition += VALUE_HEADER + capacity;
+		  }
+
+		  ByteBuffer chunk = valueChunk(position);
+		  int start = valueOffset(position);
+		  chunk.putInt(start + 4, bytes.length);
+		  chunk.put(start + VALUE_HEADER, bytes);
+		  return position;
+	  }
+
+	  // adds the value record of node x to the free list of its capacity.
+	  // complexity: O(1).
+	  private void releaseValue(int x) {
+		  long position = chunk(x).getLong(offset(x) + VALUE);
+		  if (position < 0) {
+			  return;
+		  }
+		  ByteBuffer chunk = valueChunk(position);
+		  int start = valueOffset(position);
+		  int c = sizeClass(chunk.getInt(start));
+		  chunk.putLong(start + VALUE_HEADER, this.freeValues[c]);
+		  this.freeValues[c] = position;
+	  }
+
+	  // the free list of a record with the given capacity, log2(capacity) or CHUNK_SHIFT for the largest capacity.
+	  private static int sizeClass(int capacity) {
+		  return capacity == CHUNK_BYTES - VALUE_HEADER ? CHUNK_SHIFT : 31 - Integer.numberOfLeadingZeros(capacity);
+	  }
+
+	  // returns the index of a new leaf with key k and info i. the value is written first,
+	  // so a value that is too long takes no node.
+	  // complexity: O(1) amortized.
+	  private int allocate(int k, String i) {
+		  long value = writeValue(i);
+		  int x;
+		  if (this.freeNode != NIL) {
+			  x = this.freeNode;
+			  this.freeNode = right(x);
+		  }
+		  else {
+			  if (this.nextNode >>> NODES_SHIFT == this.nodeChunks.length) {
+				  this.nodeChunks = Arrays.copyOf(this.nodeChunks, this.nodeChunks.length + 1);
+				  this.nodeChunks[this.nodeChunks.length - 1] = newChunk();
+			  }
+			  x = this.nextNode++;
+		  }
+		  ByteBuffer chunk = chunk(x);
+		  int offset = offset(x);
+		  chunk.putInt(offset + KEY, k);
+		  chunk.putInt(offset + LEFT, NIL);
+		  chunk.putInt(offset + RIGHT, NIL);
+		  chunk.putInt(offset + PARENT, NIL);
+		  chunk.putInt(offset + HEIGHT, 0);
+		  chunk.putLong(offset + VALUE, value);
+		  return x;
+	  }
+
+	  // adds x and its value to the free lists, x is linked through the right field.
+	  // complexity: O(1).
+	  private void release(int x) {
+		  releaseValue(x);
+		  setRight(x, this.freeNode);
+		  this.freeNode = x;
+	  }
+
+	  // creates the first chunk of nodes, with the virtual node at index 0.
+	  private void initVirtualNode() {
+		  Arrays.fill(this.freeValues, -1);
+		  this.nodeChunks = new ByteBuffer[] {newChunk()};
+		  setHeight(NIL, -1);
+	  }
+
+	  // returns a new chunk of CHUNK_BYTES, mapped from the end of the file or in a direct buffer.
+	  private ByteBuffer newChunk() {
+		  ByteBuffer chunk;
+		  if (this.channel == null) {
+			  chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+		  }
+		  else {
+			  try {
+				  chunk = this.channel.map(FileChannel.MapMode.READ_WRITE, this.fileSize, CHUNK_BYTES);
+			  }
+			  catch (IOException e) {
+				  throw new UncheckedIOException(e);
+			  }
+			  this.fileSize += CHUNK_BYTES;
+		  }
+		  return chunk.order(ByteOrder.nativeOrder());
+	  }
+  }
+  
+  /**
+   * public static class ConcurrentAVLTree
+   *
+   * A thread-safe AVLTree. Writers hold the write lock of a StampedLock.
+   * Readers first walk the tree without a lock (an optimistic read) and validate
+   * the stamp at the end. If a writer changed the tree in the meantime, they read
+   * again under the read lock. A walk without a lock may see a rotation half done,
+   * so it is limited to MAX_STEPS nodes per search path and any exception is
+   * treated like a failed validation.
+   */
+  public static class ConcurrentAVLTree {
+	  // more than the height of any AVL tree with int keys (1.44 * 31 < 64).
+	  private static final int MAX_STEPS = 64;
+
+	  private final AVLTree tree = new AVLTree();
+	  private final StampedLock lock = new StampedLock();
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  try {
+				  IAVLNode x = boundedSearch(k);
+				  String info = x == null ? null : x.getValue();
+				  if (this.lock.validate(stamp)) {
+					  return info;
+				  }
+			  }
+			  catch (RuntimeException e) {
+				  // the tree was changed during the walk.
+			  }
+		  }
+
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.search(k);
+		  }
+		  finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * Returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String min() {
+		  // COMPLEXITY: O(1).
+
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  try {
+				  String info = this.tree.min();
+				  if (this.lock.validate(stamp)) {
+					  return info;
+				  }
+			  }
+			  catch (RuntimeException e) {
+				  // the tree was changed during the read.
+			  }
+		  }
+
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.min();
+		  }
+		  finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * Returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String max() {
+		  // COMPLEXITY: O(1).
+
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  try {
+				  String info = this.tree.max();
+				  if (this.lock.validate(stamp)) {
+					  return info;
+				  }
+			  }
+			  catch (RuntimeException e) {
+				  // the tree was changed during the read.
+			  }
+		  }
+
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.max();
+		  }
+		  finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+
+		  long stamp = this.lock.tryOptimisticRead();
+		  int size = this.tree.size();
+		  if (this.lock.validate(stamp)) {
+			  return size;
+		  }
+
+		  stamp = this.lock.readLock();
+		  try {
+			  return this.tree.size();
+		  }
+		  finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int[] keysInRange(int lo, int hi)
+	   *
+	   * Returns a sorted array with the keys of the tree in [lo, hi].
+	   */
+	  public int[] keysInRange(int lo, int hi) {
+		  // COMPLEXITY: O(log(n) + the number of keys in the range).
+
+		  long stamp = this.lock.tryOptimisticRead();
+		  if (stamp != 0) {
+			  try {
+				  int[] keys = boundedRange(lo, hi);
+				  if (this.lock.validate(stamp)) {
+					  return keys;
+				  }
+			  }
+			  catch (RuntimeException e) {
+				  // the tree was changed during the walk.
+			  }
+		  }
+
+		  stamp = this.lock.readLock();
+		  try {
+			  return boundedRange(lo, hi);
+		  }
+		  finally {
+			  this.lock.unlockRead(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i to the AVL tree, like AVLTree.insert().
+	   */
+	  public int insert(int k, String i) {
+		  // COMPLEXITY: O(log(n)).
+
+		  long stamp = this.lock.writeLock();
+		  try {
+			  return this.tree.insert(k, i);
+		  }
+		  finally {
+			  this.lock.unlockWrite(stamp);
+		  }
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k from the tree, like AVLTree.delete().
+	   */
+	  public int delete(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  long stamp = this.lock.writeLock();
+		  try {
+			  return this.tree.delete(k);
+		  }
+		  finally {
+			  this.lock.unlockWrite(stamp);
+		  }
+	  }
+
+	  // finds node with key k, or null if there is no such key.
+	  // throws ConcurrentModificationException if the path is longer than MAX_STEPS.
+	  // complexity: O(log(n)).
+	  private IAVLNode boundedSearch(int k) {
+		  IAVLNode x = this.tree.getRoot();
+		  for (int steps = 0; x.isRealNode(); steps++) {
+			  if (steps == MAX_STEPS) {
+				  throw new ConcurrentModificationException();
+			  }
+			  int key = x.getKey();
+			  if (key == k) {
+				  return x;
+			  }
+			  x = key > k ? x.getLeft() : x.getRight();
+		  }
+		  return null;
+	  }
+
+	  // returns the keys in [lo, hi], walking down from the root with an explicit stack.
+	  // throws ConcurrentModificationException if a path is longer than MAX_STEPS, or if more
+	  // keys are found than the tree has.
+	  // complexity: O(log(n) + the number of keys in the range).
+	  private int[] boundedRange(int lo, int hi) {
+		  int limit = this.tree.size();
+		  int[] keys = new int[16];
+		  int count = 0;
+
+		  // the stack holds the nodes whose left side was visited, on the current path.
+		  IAVLNode[] stack = new IAVLNode[MAX_STEPS];
+		  int depth = 0;
+		  IAVLNode x = this.tree.getRoot();
+		  while (true) {
+			  // go down to the left, skipping nodes smaller than lo.
+			  for (int steps = depth; x.isRealNode(); steps++) {
+				  if (steps == MAX_STEPS) {
+					  throw new ConcurrentModificationException();
+				  }
+				  if (x.getKey() < lo) {
+					  x = x.getRight();
+				  }
+				  else {
+					  stack[depth++] = x;
+					  x = x.getLeft();
+				  }
+			  }
+			  if (depth == 0) {
+				  return Arrays.copyOf(keys, count);
+			  }
+
+			  x = stack[--depth];
+			  if (x.getKey() > hi) {
+				  // all the remaining nodes are larger.
+				  return Arrays.copyOf(keys, count);
+			  }
+			  if (count == limit) {
+				  throw new ConcurrentModificationException();
+			  }
+			  if (count == keys.length) {
+				  keys = Arrays.copyOf(keys, 2 * count);
+			  }
+			  keys[count++] = x.getKey();
+			  x = x.getRight();
+		  }
+	  }
+  }
+  
+  /**
+   * public static class PersistentAVLTree
+   *
+   * An AVL tree whose nodes never change after they are created. insert, delete,
+   * join and split create new nodes only on the search path (O(log(n)) nodes) and
+   * share the rest with the previous version, so snapshot() is O(1). A snapshot can be
+   * read by other threads without a lock while one writer keeps changing the tree,
+   * and old versions are collected once nobody references them.
+   * The nodes have no parent links, so going up the tree is done by the recursion.
+   */
+  public static class PersistentAVLTree {
+	  // the current version. null is the empty tree.
+	  private volatile Node root;
+
+	  // creates an empty tree.
+	  public PersistentAVLTree() {
+		  this.root = null;
+	  }
+
+	  // creates a tree with the version root.
+	  private PersistentAVLTree(Node root) {
+		  this.root = root;
+	  }
+
+	  /**
+	   * public PersistentAVLTree snapshot()
+	   *
+	   * Returns a tree with the current items. Changing the tree does not change the snapshot,
+	   * and changing the snapshot does not change the tree.
+	   */
+	  public PersistentAVLTree snapshot() {
+		  // COMPLEXITY: O(1).
+		  return new PersistentAVLTree(this.root);
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * Returns true if and only if the tree is empty.
+	   */
+	  public boolean empty() {
+		  // COMPLEXITY: O(1).
+		  return this.root == null;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  while (x != null) {
+			  if (x.key == k) {
+				  return x.info;
+			  }
+			  x = x.key > k ? x.left : x.right;
+		  }
+		  return null;
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i to the tree.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k already exists in the tree.
+	   */
+	  public int insert(int k, String i) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int[] counter = new int[1];
+		  Node newRoot = insert(this.root, k, i, counter);
+		  if (newRoot == this.root) {
+			  // insert returns the same node if the key exists.
+			  return -1;
+		  }
+		  this.root = newRoot;
+		  return counter[0];
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k from the tree, if it is there.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k was not found in the tree.
+	   */
+	  public int delete(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int[] counter = new int[1];
+		  Node newRoot = delete(this.root, k, counter);
+		  if (newRoot == this.root) {
+			  // delete returns the same node if the key is not there.
+			  return -1;
+		  }
+		  this.root = newRoot;
+		  return counter[0];
+	  }
+
+	  /**
+	   * public String min()
+	   *
+	   * Returns the info of the item with the smallest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String min() {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  if (x == null) {
+			  return null;
+		  }
+		  while (x.left != null) {
+			  x = x.left;
+		  }
+		  return x.info;
+	  }
+
+	  /**
+	   * public String max()
+	   *
+	   * Returns the info of the item with the largest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public String max() {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  if (x == null) {
+			  return null;
+		  }
+		  while (x.right != null) {
+			  x = x.right;
+		  }
+		  return x.info;
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  Node version = this.root;
+		  int[] keys = new int[size(version)];
+		  int[] index = new int[1];
+		  forEach(version, (key, info) -> keys[index[0]++] = key);
+		  return keys;
+	  }
+
+	  /**
+	   * public String[] infoToArray()
+	   *
+	   * Returns an array which contains all info in the tree,
+	   * sorted by their respective keys,
+	   * or an empty array if the tree is empty.
+	   */
+	  public String[] infoToArray() {
+		  // COMPLEXITY: O(n).
+
+		  Node version = this.root;
+		  String[] values = new String[size(version)];
+		  int[] index = new int[1];
+		  forEach(version, (key, info) -> values[index[0]++] = info);
+		  return values;
+	  }
+
+	  /**
+	   * public void forEach(ItemConsumer action)
+	   *
+	   * Calls action on every item of the current version, in increasing order of keys.
+	   * Changes to the tree during the scan are not seen by it.
+	   */
+	  public void forEach(ItemConsumer action) {
+		  // COMPLEXITY: O(n).
+		  forEach(this.root, action);
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return size(this.root);
+	  }
+
+	  // get the rank of the tree.
+	  // complexity: O(1).
+	  public int getRank() {
+		  return height(this.root);
+	  }
+
+	  /**
+	   * public PersistentAVLTree[] split(int x)
+	   *
+	   * splits the tree into 2 trees according to the key x.
+	   * Returns an array [t1, t2] with two trees. keys(t1) < x < keys(t2).
+	   * The tree itself does not change.
+	   */
+	  public PersistentAVLTree[] split(int x) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node[] parts = split(this.root, x, new int[1]);
+		  return new PersistentAVLTree[] {new PersistentAVLTree(parts[0]), new PersistentAVLTree(parts[1])};
+	  }
+
+	  /**
+	   * public int join(int k, String i, PersistentAVLTree t)
+	   *
+	   * joins t and a new item (k, i) with the tree. t does not change.
+	   * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
+	   *
+	   * precondition: keys(t) < k < keys() or keys(t) > k > keys(). t/tree might be empty (rank = -1).
+	   * postcondition: none
+	   */
+	  public int join(int k, String i, PersistentAVLTree t) {
+		  // COMPLEXITY: O(|tree.rank - t.rank| + 1).
+
+		  Node version = this.root;
+		  Node other = t.root;
+		  int returnValue = Math.abs(height(version) - height(other)) + 1;
+
+		  // determine if t's keys are smaller than k.
+		  boolean tSmaller = other != null ? other.key < k : version != null && version.key > k;
+		  int[] counter = new int[1];
+		  this.root = tSmaller ? join(other, k, i, version, counter) : join(version, k, i, other, counter);
+
+		  return returnValue;
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // complexity: O(1).
+	  private static int height(Node x) {
+		  return x == null ? -1 : x.height;
+	  }
+
+	  // complexity: O(1).
+	  private static int size(Node x) {
+		  return x == null ? 0 : x.size;
+	  }
+
+	  // returns the subtree left < (k, i) < right, rotated if it is not balanced.
+	  // the heights of left and right may differ by at most 2. a rotation adds rotation
+	  // to counter[0] and a double rotation adds 5, like AVLTree.
+	  // complexity: O(1).
+	  private static Node balance(Node left, int k, String i, Node right, int rotation, int[] counter) {
+		  int bf = height(left) - height(right);
+		  if (bf > 1) {
+			  if (height(left.left) >= height(left.right)) {
+				  // rotate right.
+				  counter[0] += rotation;
+				  return new Node(left.left, left.key, left.info, new Node(left.right, k, i, right));
+			  }
+			  // double rotation, left.right becomes the root.
+			  counter[0] += 5;
+			  Node son = left.right;
+			  return new Node(new Node(left.left, left.key, left.info, son.left), son.key, son.info,
+					  new Node(son.right, k, i, right));
+		  }
+		  if (bf < -1) {
+			  if (height(right.right) >= height(right.left)) {
+				  // rotate left.
+				  counter[0] += rotation;
+				  return new Node(new Node(left, k, i, right.left), right.key, right.info, right.right);
+			  }
+			  // double rotation, right.left becomes the root.
+			  counter[0] += 5;
+			  Node son = right.left;
+			  return new Node(new Node(left, k, i, son.left), son.key, son.info,
+					  new Node(son.right, right.key, right.info, right.right));
+		  }
+		  return new Node(left, k, i, right);
+	  }
+
+	  // returns the balanced subtree left < (k, i) < right that replaces a subtree of height oldHeight.
+	  // if it was not rotated and its height changed, a promotion or demotion is added to counter[0].
+	  // complexity: O(1).
+	  private static Node replace(int oldHeight, Node left, int k, String i, Node right, int rotation,
+			  int[] counter) {
+		  int before = counter[0];
+		  Node x = balance(left, k, i, right, rotation, counter);
+		  if (counter[0] == before && x.height != oldHeight) {
+			  counter[0]++;
+		  }
+		  return x;
+	  }
+
+	  // returns the subtree of x with (k, i), or x itself if k is already in it.
+	  // complexity: O(log(n)).
+	  private static Node insert(Node x, int k, String i, int[] counter) {
+		  if (x == null) {
+			  return new Node(null, k, i, null);
+		  }
+		  if (k == x.key) {
+			  return x;
+		  }
+		  if (k < x.key) {
+			  Node left = insert(x.left, k, i, counter);
+			  return left == x.left ? x : replace(x.height, left, x.key, x.info, x.right, 2, counter);
+		  }
+		  Node right = insert(x.right, k, i, counter);
+		  return right == x.right ? x : replace(x.height, x.left, x.key, x.info, right, 2, counter);
+	  }
+
+	  // returns the subtree of x without k, or x itself if k is not in it.
+	  // complexity: O(log(n)).
+	  private static Node delete(Node x, int k, int[] counter) {
+		  if (x == null) {
+			  return null;
+		  }
+		  if (k < x.key) {
+			  Node left = delete(x.left, k, counter);
+			  return left == x.left ? x : replace(x.height, left, x.key, x.info, x.right, 3, counter);
+		  }
+		  if (k > x.key) {
+			  Node right = delete(x.right, k, counter);
+			  return right == x.right ? x : replace(x.height, x.left, x.key, x.info, right, 3, counter);
+		  }
+		  if (x.left == null) {
+			  return x.right;
+		  }
+		  if (x.right == null) {
+			  return x.left;
+		  }
+		  // x has two children, its successor takes its place.
+		  Node successor = x.right;
+		  while (successor.left != null) {
+			  successor = successor.left;
+		  }
+		  Node right = delete(x.right, successor.key, counter);
+		  return replace(x.height, x.left, successor.key, successor.info, right, 3, counter);
+	  }
+
+	  // returns the subtree left < (k, i) < right. left and right might be null.
+	  // rotations are added to counter[0], counted like after an insertion.
+	  // like the join of AVLTree, the taller tree is walked down to a height of the other one
+	  // (or one less), so the shapes and the re-balancing operations are the same.
+	  // complexity: O(|height(left) - height(right)| + 1).
+	  private static Node join(Node left, int k, String i, Node right, int[] counter) {
+		  if (height(left) > height(right)) {
+			  return joinRight(left, k, i, right, counter);
+		  }
+		  if (height(right) > height(left)) {
+			  return joinLeft(left, k, i, right, counter);
+		  }
+		  return new Node(left, k, i, right);
+	  }
+
+	  // goes down the right branch of left, until its height is at most the height of right.
+	  // complexity: O(height(left) - height(right) + 1).
+	  private static Node joinRight(Node left, int k, String i, Node right, int[] counter) {
+		  if (height(left) <= height(right)) {
+			  return new Node(left, k, i, right);
+		  }
+		  return balance(left.left, left.key, left.info, joinRight(left.right, k, i, right, counter), 2, counter);
+	  }
+
+	  // goes down the left branch of right, until its height is at most the height of left.
+	  // complexity: O(height(right) - height(left) + 1).
+	  private static Node joinLeft(Node left, int k, String i, Node right, int[] counter) {
+		  if (height(right) <= height(left)) {
+			  return new Node(left, k, i, right);
+		  }
+		  return balance(joinLeft(left, k, i, right.left, counter), right.key, right.info, right.right, 2, counter);
+	  }
+
+	  // returns [t1, t2] with the keys of x smaller than k and larger than k.
+	  // complexity: O(log(n)).
+	  private static Node[] split(Node x, int k, int[] counter) {
+		  if (x == null) {
+			  return new Node[] {null, null};
+		  }
+		  if (k < x.key) {
+			  Node[] parts = split(x.left, k, counter);
+			  parts[1] = join(parts[1], x.key, x.info, x.right, counter);
+			  return parts;
+		  }
+		  if (k > x.key) {
+			  Node[] parts = split(x.right, k, counter);
+			  parts[0] = join(x.left, x.key, x.info, parts[0], counter);
+			  return parts;
+		  }
+		  return new Node[] {x.left, x.right};
+	  }
+
+	  // in order scan of the subtree of x, with an explicit stack.
+	  // complexity: O(n).
+	  private static void forEach(Node x, ItemConsumer action) {
+		  Node[] stack = new Node[height(x) + 1];
+		  int depth = 0;
+		  while (x != null || depth > 0) {
+			  while (x != null) {
+				  stack[depth++] = x;
+				  x = x.left;
+			  }
+			  x = stack[--depth];
+			  action.accept(x.key, x.info);
+			  x = x.right;
+		  }
+	  }
+
+	  /**
+	   * private static final class Node
+	   *
+	   * A node of the tree. All its fields are final, so a version can be read
+	   * by other threads without a lock.
+	   */
+	  private static final class Node {
+		  private final int key;
+		  private final String info;
+		  private final Node left;
+		  private final Node right;
+		  private final int height;
+		  private final int size;
+
+		  private Node(Node left, int key, String info, Node right) {
+			  this.key = key;
+			  this.info = info;
+			  this.left = left;
+			  this.right = right;
+			  this.height = Math.max(height(left), height(right)) + 1;
+			  this.size = size(left) + size(right) + 1;
+		  }
+	  }
+  }
+  
+  /**
+   * public static class ShardedAVLTree
+   *
+   * A thread-safe ordered map over several AVLTree shards. Every shard owns a
+   * contiguous range of keys and has its own read-write lock, so writes to different
+   * ranges run in parallel. The routing table (the lowest key of every shard) is
+   * replaced as a whole when shards change, and read without a lock.
+   * A shard with more than maxShardSize items is divided with split(), and two
+   * neighbouring shards with less than maxShardSize / 2 items together are merged with join().
+   * A shard that was divided or merged is retired, and operations that waited for
+   * its lock route the key again.
+   */
+  public static class ShardedAVLTree {
+	  private final int maxShardSize;
+	  private volatile Routing routing;
+	  private final AtomicInteger length = new AtomicInteger();
+
+	  // creates an empty map, with one shard for all the keys.
+	  // maxShardSize must be at least 4, otherwise a shard is never small enough to be merged.
+	  public ShardedAVLTree(int maxShardSize) {
+		  if (maxShardSize < 4) {
+			  throw new IllegalArgumentException("maxShardSize must be at least 4, got " + maxShardSize);
+		  }
+		  this.maxShardSize = maxShardSize;
+		  this.routing = new Routing(new Shard[] {new Shard(Integer.MIN_VALUE, new AVLTree())});
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the map.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  while (true) {
+			  Shard shard = this.routing.route(k);
+			  shard.lock.readLock().lock();
+			  try {
+				  if (!shard.retired) {
+					  return shard.tree.search(k);
+				  }
+			  }
+			  finally {
+				  shard.lock.readLock().unlock();
+			  }
+		  }
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i to the map.
+	   * Returns the number of re-balancing operations in the shard of k, like AVLTree.insert().
+	   * Returns -1 if an item with key k already exists in the map.
+	   */
+	  public int insert(int k, String i) {
+		  // COMPLEXITY: O(log(n)), and O(log(n) + shards) when the shard is divided.
+
+		  while (true) {
+			  Shard shard = this.routing.route(k);
+			  shard.lock.writeLock().lock();
+			  try {
+				  if (shard.retired) {
+					  continue;
+				  }
+				  int result = shard.tree.insert(k, i);
+				  if (result != -1) {
+					  this.length.incrementAndGet();
+					  if (shard.tree.size() > this.maxShardSize) {
+						  splitShard(shard);
+					  }
+				  }
+				  return result;
+			  }
+			  finally {
+				  shard.lock.writeLock().unlock();
+			  }
+		  }
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k from the map, if it is there.
+	   * Returns the number of re-balancing operations in the shard of k, like AVLTree.delete().
+	   * Returns -1 if an item with key k was not found in the map.
+	   */
+	  public int delete(int k) {
+		  // COMPLEXITY: O(log(n)), and O(log(n) + shards) when shards are merged.
+
+		  int result;
+		  boolean small;
+		  while (true) {
+			  Shard shard = this.routing.route(k);
+			  shard.lock.writeLock().lock();
+			  try {
+				  if (shard.retired) {
+					  continue;
+				  }
+				  result = shard.tree.delete(k);
+				  small = shard.tree.size() < this.maxShardSize / 4;
+				  break;
+			  }
+			  finally {
+				  shard.lock.writeLock().unlock();
+			  }
+		  }
+
+		  if (result != -1) {
+			  this.length.decrementAndGet();
+			  if (small) {
+				  // the merge locks two shards, so it is done after the lock of the shard is released.
+				  mergeShards(k);
+			  }
+		  }
+		  return result;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of items in the map.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return this.length.get();
+	  }
+
+	  /**
+	   * public int shards()
+	   *
+	   * Returns the number of shards.
+	   */
+	  public int shards() {
+		  // COMPLEXITY: O(1).
+		  return this.routing.shards.length;
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the map.
+	   * Every shard is read under its lock, but the shards are read one after the other,
+	   * so changes in other shards during the scan might be seen.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  while (true) {
+			  Shard[] shards = this.routing.shards;
+			  int[][] parts = new int[shards.length][];
+			  int total = 0;
+			  boolean retired = false;
+			  for (int s = 0; s < shards.length && !retired; s++) {
+				  shards[s].lock.readLock().lock();
+				  try {
+					  retired = shards[s].retired;
+					  parts[s] = retired ? null : shards[s].tree.keysToArray();
+				  }
+				  finally {
+					  shards[s].lock.readLock().unlock();
+				  }
+				  total += retired ? 0 : parts[s].length;
+			  }
+			  if (retired) {
+				  // the shards changed during the scan, start again with the new routing table.
+				  continue;
+			  }
+
+			  int[] keys = new int[total];
+			  int index = 0;
+			  for (int[] part : parts) {
+				  System.arraycopy(part, 0, keys, index, part.length);
+				  index += part.length;
+			  }
+			  return keys;
+		  }
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // divides shard at its median key. the caller holds the write lock of shard.
+	  // complexity: O(log(n) + shards).
+	  private void splitShard(Shard shard) {
+		  AVLTree tree = shard.tree;
+		  int middle = tree.select((tree.size() + 1) / 2);
+		  String middleInfo = tree.search(middle);
+
+		  // split removes the middle key, it is the first key of the right shard.
+		  AVLTree[] trees = tree.split(middle);
+		  trees[1].insert(middle, middleInfo);
+
+		  replaceShards(shard, null, new Shard(shard.low, trees[0]), new Shard(middle, trees[1]));
+		  shard.retired = true;
+	  }
+
+	  // merges the shard of k with its smaller neighbour, if they are both small.
+	  // the locks are taken in increasing order of keys, so two merges can not wait for each other.
+	  // complexity: O(log(n) + shards).
+	  private void mergeShards(int k) {
+		  // the table is read once, a table published later might have more shards than shards.
+		  Routing routing = this.routing;
+		  Shard[] shards = routing.shards;
+		  if (shards.length == 1) {
+			  return;
+		  }
+		  // the sizes are read without the locks, they are checked again under them.
+		  int index = routing.index(k);
+		  if (index == shards.length - 1
+				  || index > 0 && shards[index - 1].tree.size() < shards[index + 1].tree.size()) {
+			  index--;
+		  }
+		  Shard left = shards[index];
+		  Shard right = shards[index + 1];
+
+		  left.lock.writeLock().lock();
+		  right.lock.writeLock().lock();
+		  try {
+			  // two shards that are not retired were not changed since they were neighbours.
+			  if (left.retired || right.retired || left.tree.size() + right.tree.size() >= this.maxShardSize / 2) {
+				  return;
+			  }
+
+			  if (!right.tree.empty()) {
+				  // the smallest item of the right shard is the middle node of join.
+				  int middle = right.tree.select(1);
+				  IAVLNode node = left.tree.new AVLNode(middle, right.tree.search(middle));
+				  right.tree.delete(middle);
+				  left.tree.join(node, right.tree);
+			  }
+			  Shard merged = new Shard(left.low, left.tree);
+			  replaceShards(left, right, merged);
+			  left.retired = true;
+			  right.retired = true;
+		  }
+		  finally {
+			  right.lock.writeLock().unlock();
+			  left.lock.writeLock().unlock();
+		  }
+	  }
+
+	  // replaces first (and second, its right neighbour, if it is not null) with added in the routing table.
+	  // complexity: O(shards).
+	  private synchronized void replaceShards(Shard first, Shard second, Shard... added) {
+		  Routing routing = this.routing;
+		  Shard[] shards = routing.shards;
+		  int index = routing.index(first.low);
+		  int removed = second == null ? 1 : 2;
+
+		  Shard[] replaced = new Shard[shards.length - removed + added.length];
+		  System.arraycopy(shards, 0, replaced, 0, index);
+		  System.arraycopy(added, 0, replaced, index, added.length);
+		  System.arraycopy(shards, index + removed, replaced, index + added.length, shards.length - index - removed);
+		  this.routing = new Routing(replaced);
+	  }
+
+	  /**
+	   * private static class Shard
+	   *
+	   * A tree with the keys in [low, the low of the next shard).
+	   */
+	  private static class Shard {
+		  private final int low;
+		  private final AVLTree tree;
+		  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		  // set under the write lock, when the shard is replaced in the routing table.
+		  private boolean retired;
+
+		  private Shard(int low, AVLTree tree) {
+			  this.low = low;
+			  this.tree = tree;
+		  }
+	  }
+
+	  /**
+	   * private static class Routing
+	   *
+	   * The shards in increasing order of keys, and their lowest keys for the binary search.
+	   * A routing table is never changed after it is created.
+	   */
+	  private static class Routing {
+		  private final Shard[] shards;
+		  private final int[] lows;
+
+		  private Routing(Shard[] shards) {
+			  this.shards = shards;
+			  this.lows = new int[shards.length];
+			  for (int s = 0; s < shards.length; s++) {
+				  this.lows[s] = shards[s].low;
+			  }
+		  }
+
+		  // returns the index of the last shard with low <= k.
+		  // complexity: O(log(shards)).
+		  private int index(int k) {
+			  int lo = 0;
+			  int hi = this.lows.length - 1;
+			  while (lo < hi) {
+				  int mid = (lo + hi + 1) >>> 1;
+				  if (this.lows[mid] <= k) {
+					  lo = mid;
+				  }
+				  else {
+					  hi = mid - 1;
+				  }
+			  }
+			  return lo;
+		  }
+
+		  // complexity: O(log(shards)).
+		  private Shard route(int k) {
+			  return this.shards[index(k)];
+		  }
+	  }
+  }
+  
+  /**
+   * public static class DurableAVLTree
+   *
+   * An AVLTree whose changes survive a crash. Every insert, delete, split and join is
+   * applied to the tree and appended to a write-ahead log (the file wal-E in the directory).
+   * The caller returns only after its record was written, so concurrent writers share
+   * one write (and one force(), by the sync mode): the first writer to take flushLock
+   * writes the records of all the writers that are waiting (group commit).
+   * checkpoint() saves the tree to checkpoint-(E+1) and starts the empty log wal-(E+1),
+   * and it is also called when the log grows past checkpointBytes.
+   * open() loads the latest checkpoint and replays its log, up to the first incomplete record.
+   */
+  public static class DurableAVLTree {
+	  /**
+	   * public enum SyncMode
+	   *
+	   * FORCE: every group of records is written and forced to the disk.
+	   * WRITE: every group is written to the operating system, without force(). Survives a crash of the process.
+	   * NONE: the records are kept in memory until sync(), checkpoint() or close(), or until
+	   *       they are more than checkpointBytes, which starts a checkpoint.
+	   */
+	  public enum SyncMode { FORCE, WRITE, NONE }
+
+	  // record types.
+	  private static final byte INSERT = 1;
+	  private static final byte DELETE = 2;
+	  private static final byte SPLIT = 3;
+	  private static final byte JOIN = 4;
+
+	  // a record is its length, the CRC32 of its payload and the payload.
+	  private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+	  private final Path directory;
+	  private final SyncMode mode;
+	  private final long checkpointBytes;
+	  private AVLTree tree;
+	  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	  // the log. epoch, channel and logBytes are changed by checkpoint() under flushLock.
+	  private final Object flushLock = new Object();
+	  private long epoch;
+	  private FileChannel channel;
+	  private volatile long logBytes;
+
+	  // the records that were not written yet. appended under pendingLock, in the order of the changes.
+	  private final Object pendingLock = new Object();
+	  private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+	  private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+	  private long lastRecord;
+	  private volatile long writtenRecord;
+
+	  private DurableAVLTree(Path directory, SyncMode mode, long checkpointBytes) {
+		  this.directory = directory;
+		  this.mode = mode;
+		  this.checkpointBytes = checkpointBytes;
+	  }
+
+	  /**
+	   * public static DurableAVLTree open(Path directory, SyncMode mode, long checkpointBytes)
+	   *
+	   * Opens the tree in directory (created if needed): loads the latest checkpoint and replays
+	   * its log. A torn record at the end of the log is removed.
+	   * checkpointBytes is the size of the log (and of the records that were not written yet)
+	   * that starts a checkpoint, 0 for no automatic checkpoints.
+	   */
+	  public static DurableAVLTree open(Path directory, SyncMode mode, long checkpointBytes) throws IOException {
+		  // COMPLEXITY: O(n + the length of the log).
+
+		  Files.createDirectories(directory);
+		  DurableAVLTree durable = new DurableAVLTree(directory, mode, checkpointBytes);
+
+		  // the latest checkpoint is complete, it is renamed only after it was forced.
+		  long latest = -1;
+		  try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*")) {
+			  for (Path file : files) {
+				  String epoch = file.getFileName().toString().substring("checkpoint-".length());
+				  if (epoch.matches("[0-9]+")) {
+					  latest = Math.max(latest, Long.parseLong(epoch));
+				  }
+			  }
+		  }
+		  durable.epoch = Math.max(latest, 0);
+		  durable.tree = latest == -1 ? new AVLTree() : AVLTree.load(durable.checkpointFile(latest));
+
+		  durable.channel = FileChannel.open(durable.logFile(durable.epoch), StandardOpenOption.CREATE,
+				  StandardOpenOption.READ, StandardOpenOption.WRITE);
+		  long end = durable.replay();
+		  durable.channel.truncate(end);
+		  durable.channel.position(end);
+		  durable.logBytes = end;
+
+		  // the files of the latest epoch must be on the disk before the older ones are deleted.
+		  durable.forceDirectory();
+		  durable.deleteOlder(durable.epoch);
+		  return durable;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the info of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  this.lock.readLock().lock();
+		  try {
+			  return this.tree.search(k);
+		  }
+		  finally {
+			  this.lock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+
+		  this.lock.readLock().lock();
+		  try {
+			  return this.tree.size();
+		  }
+		  finally {
+			  this.lock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  this.lock.readLock().lock();
+		  try {
+			  return this.tree.keysToArray();
+		  }
+		  finally {
+			  this.lock.readLock().unlock();
+		  }
+	  }
+
+	  /**
+	   * public int insert(int k, String i)
+	   *
+	   * Inserts an item with key k and info i, like AVLTree.insert(), and logs it.
+	   * Returns after the record was written, by the sync mode.
+	   * If the write fails, the item stays in the tree and its record stays pending,
+	   * so it is written (in order) by the next write of the log.
+	   */
+	  public int insert(int k, String i) throws IOException {
+		  // COMPLEXITY: O(log(n)) and a share of one write of the log.
+
+		  int result;
+		  long record = 0;
+		  this.lock.writeLock().lock();
+		  try {
+			  result = this.tree.insert(k, i);
+			  if (result != -1) {
+				  record = append(INSERT, k, i, null, null);
+			  }
+		  }
+		  finally {
+			  this.lock.writeLock().unlock();
+		  }
+		  commit(record);
+		  return result;
+	  }
+
+	  /**
+	   * public int delete(int k)
+	   *
+	   * Deletes an item with key k, like AVLTree.delete(), and logs it.
+	   * Returns after the record was written, by the sync mode.
+	   * A failed write is handled like in insert().
+	   */
+	  public int delete(int k) throws IOException {
+		  // COMPLEXITY: O(log(n)) and a share of one write of the log.
+
+		  int result;
+		  long record = 0;
+		  this.lock.writeLock().lock();
+		  try {
+			  result = this.tree.delete(k);
+			  if (result != -1) {
+				  record = append(DELETE, k, null, null, null);
+			  }
+		  }
+		  finally {
+			  this.lock.writeLock().unlock();
+		  }
+		  commit(record);
+		  return result;
+	  }
+
+	  /**
+	   * public AVLTree split(int x)
+	   *
+	   * splits the tree like AVLTree.split(). The items with keys smaller than x stay in the
+	   * durable tree, and the items with keys larger than x are returned in a tree that is not durable.
+	   * The split is logged by x, so replaying it keeps the same items.
+	   * Throws IllegalArgumentException if x is not in the tree.
+	   */
+	  public AVLTree split(int x) throws IOException {
+		  // COMPLEXITY: O(log(n)) and a share of one write of the log.
+
+		  AVLTree[] trees;
+		  long record;
+		  this.lock.writeLock().lock();
+		  try {
+			  if (this.tree.treeSearch(x) == null) {
+				  throw new IllegalArgumentException("key " + x + " is not in the tree");
+			  }
+			  trees = this.tree.split(x);
+			  this.tree = trees[0];
+			  record = append(SPLIT, x, null, null, null);
+		  }
+		  finally {
+			  this.lock.writeLock().unlock();
+		  }
+		  commit(record);
+		  return trees[1];
+	  }
+
+	  /**
+	   * public int join(int k, String i, AVLTree t)
+	   *
+	   * joins t and a new item (k, i) with the tree, like AVLTree.join(). The nodes of t become
+	   * nodes of the tree, so t should not be used after the join.
+	   * t is not durable, so all its items are logged, after the join.
+	   * Throws IllegalArgumentException, and changes nothing, unless keys(t) < k < keys()
+	   * or keys(t) > k > keys().
+	   */
+	  public int join(int k, String i, AVLTree t) throws IOException {
+		  // COMPLEXITY: O(|tree.rank - t.rank| + 1) for the join, O(|t|) for the record.
+
+		  int result;
+		  long record;
+		  this.lock.writeLock().lock();
+		  try {
+			  if (t == this.tree || !separated(t, k, this.tree) && !separated(this.tree, k, t)) {
+				  throw new IllegalArgumentException("the keys of t and the tree are not on the two sides of " + k);
+			  }
+			  // the items of t are read before its nodes move to the tree.
+			  int[] keys = t.keysToArray();
+			  String[] values = t.infoToArray();
+			  result = this.tree.join(this.tree.new AVLNode(k, i), t);
+			  record = append(JOIN, k, i, keys, values);
+		  }
+		  finally {
+			  this.lock.writeLock().unlock();
+		  }
+		  commit(record);
+		  return result;
+	  }
+
+	  /**
+	   * public void sync()
+	   *
+	   * Writes and forces all the records, whatever the sync mode is.
+	   */
+	  public void sync() throws IOException {
+		  synchronized (this.flushLock) {
+			  flush(true);
+		  }
+	  }
+
+	  /**
+	   * public void checkpoint()
+	   *
+	   * Saves the tree as a new checkpoint and starts a new, empty log.
+	   * The old checkpoint and log are deleted.
+	   */
+	  public void checkpoint() throws IOException {
+		  // COMPLEXITY: O(n + the length of the infos).
+
+		  checkpoint(0);
+	  }
+
+	  /**
+	   * public void close()
+	   *
+	   * Writes and forces all the records and closes the log.
+	   */
+	  public void close() throws IOException {
+		  sync();
+		  this.channel.close();
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // saves the tree as a new checkpoint, if the log and the pending records are more than bytes.
+	  // the size is checked again under flushLock, so two writers that both saw a large log
+	  // make only one checkpoint.
+	  // complexity: O(n + the length of the infos), or O(1) if the log is not large.
+	  private void checkpoint(long bytes) throws IOException {
+		  // no change is made while the tree is saved, so the checkpoint contains all the records.
+		  this.lock.writeLock().lock();
+		  try {
+			  synchronized (this.flushLock) {
+				  if (logSize() < bytes) {
+					  return;
+				  }
+				  long next = this.epoch + 1;
+				  Path temporary = this.directory.resolve("checkpoint.tmp");
+				  this.tree.save(temporary);
+				  try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					  file.force(true);
+				  }
+				  Files.move(temporary, checkpointFile(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+				  // the records that were not written are in the checkpoint.
+				  FileChannel log = FileChannel.open(logFile(next), StandardOpenOption.CREATE,
+						  StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				  this.channel.close();
+				  this.channel = log;
+				  this.epoch = next;
+				  this.logBytes = 0;
+				  synchronized (this.pendingLock) {
+					  this.pending.clear();
+					  this.writtenRecord = this.lastRecord;
+				  }
+
+				  // the rename and the new log must be on the disk before the files they replace are deleted,
+				  // otherwise a crash could keep the deletes and lose the rename.
+				  forceDirectory();
+				  deleteOlder(next);
+			  }
+		  }
+		  finally {
+			  this.lock.writeLock().unlock();
+		  }
+	  }
+
+	  // the bytes of the log and of the records that were not written yet.
+	  // complexity: O(1).
+	  private long logSize() {
+		  synchronized (this.pendingLock) {
+			  return this.logBytes + this.pending.position();
+		  }
+	  }
+
+	  // forces the entries of the directory (created, renamed and deleted files) to the disk.
+	  // some platforms can not open a directory as a channel, there the file system is trusted.
+	  // complexity: O(1) (one force).
+	  private void forceDirectory() {
+		  try (FileChannel directory = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+			  directory.force(true);
+		  }
+		  catch (IOException | UnsupportedOperationException e) {
+			  // the directory can not be forced on this platform.
+		  }
+	  }
+
+	  private Path checkpointFile(long epoch) {
+		  return this.directory.resolve("checkpoint-" + epoch);
+	  }
+
+	  private Path logFile(long epoch) {
+		  return this.directory.resolve("wal-" + epoch);
+	  }
+
+	  // deletes the checkpoints and logs of epochs before epoch.
+	  // complexity: O(the number of files in the directory).
+	  private void deleteOlder(long epoch) throws IOException {
+		  try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+			  for (Path file : files) {
+				  String name = file.getFileName().toString();
+				  String number = name.startsWith("checkpoint-") ? name.substring("checkpoint-".length())
+						  : name.startsWith("wal-") ? name.substring("wal-".length()) : "";
+				  if (number.matches("[0-9]+") && Long.parseLong(number) < epoch) {
+					  Files.delete(file);
+				  }
+			  }
+		  }
+	  }
+
+	  // keys(smaller) < k < keys(larger), either tree might be empty.
+	  // complexity: O(1).
+	  private static boolean separated(AVLTree smaller, int k, AVLTree larger) {
+		  return (smaller.empty() || smaller.maxNode.getKey() < k) && (larger.empty() || larger.minNode.getKey() > k);
+	  }
+
+	  // adds a record to the pending buffer and returns its number. called under the write lock,
+	  // so the records are in the order of the changes. a join record has the sorted items of t.
+	  // complexity: O(1), or O(|t|) for a join.
+	  private long append(byte type, int k, String i, int[] keys, String[] values) {
+		  synchronized (this.pendingLock) {
+			  int start = this.pending.position();
+			  reserve(RECORD_HEADER + 1 + Integer.BYTES);
+			  this.pending.position(start + RECORD_HEADER);
+			  this.pending.put(type);
+			  this.pending.putInt(k);
+			  if (type == INSERT || type == JOIN) {
+				  putString(i);
+			  }
+			  if (type == JOIN) {
+				  reserve(Integer.BYTES);
+				  this.pending.putInt(keys.length);
+				  for (int j = 0; j < keys.length; j++) {
+					  reserve(Integer.BYTES);
+					  this.pending.putInt(keys[j]);
+					  putString(values[j]);
+				  }
+			  }
+
+			  // the header: the length and the CRC32 of the payload.
+			  int length = this.pending.position() - start - RECORD_HEADER;
+			  CRC32 crc = new CRC32();
+			  crc.update(this.pending.duplicate().position(start + RECORD_HEADER).limit(start + RECORD_HEADER + length));
+			  this.pending.putInt(start, length);
+			  this.pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+
+			  return ++this.lastRecord;
+		  }
+	  }
+
+	  // writes s as varint(length + 1) and its UTF-8 bytes (0 for null).
+	  // complexity: O(the length of s).
+	  private void putString(String s) {
+		  byte[] bytes = s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+		  reserve(MAX_VARINT + (bytes == null ? 0 : bytes.length));
+		  writeVarint(this.pending, bytes == null ? 0 : bytes.length + 1L);
+		  if (bytes != null) {
+			  this.pending.put(bytes);
+		  }
+	  }
+
+	  // makes room for bytes more bytes in the pending buffer.
+	  // complexity: O(1) amortized (the buffer is doubled when full).
+	  private void reserve(int bytes) {
+		  if (this.pending.remaining() < bytes) {
+			  ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * this.pending.capacity(), this.pending.position() + bytes));
+			  this.pending.flip();
+			  larger.put(this.pending);
+			  this.pending = larger;
+		  }
+	  }
+
+	  // returns after record (and all the records before it) was written, by the sync mode.
+	  // the writer that takes flushLock first writes the records of all the waiting writers.
+	  // complexity: O(the bytes written).
+	  private void commit(long record) throws IOException {
+		  if (record == 0) {
+			  return;
+		  }
+		  // in NONE the records are not written, but they still count for the checkpoint.
+		  if (this.mode != SyncMode.NONE) {
+			  synchronized (this.flushLock) {
+				  if (this.writtenRecord < record) {
+					  flush(this.mode == SyncMode.FORCE);
+				  }
+			  }
+		  }
+		  if (this.checkpointBytes > 0 && logSize() > this.checkpointBytes) {
+			  checkpoint(this.checkpointBytes);
+		  }
+	  }
+
+	  // writes all the pending records, and forces them if force is true.
+	  // if the write or the force fails, the batch is put back before the records appended since,
+	  // and the next flush writes it again from the same position, over the part that was written.
+	  // called under flushLock.
+	  // complexity: O(the bytes written).
+	  private void flush(boolean force) throws IOException {
+		  ByteBuffer batch;
+		  long last;
+		  synchronized (this.pendingLock) {
+			  // the buffers are swapped, so the writers can append while the batch is written.
+			  batch = this.pending;
+			  this.pending = this.spare;
+			  this.pending.clear();
+			  last = this.lastRecord;
+		  }
+		  batch.flip();
+		  long position = this.logBytes;
+		  try {
+			  while (batch.hasRemaining()) {
+				  position += this.channel.write(batch, position);
+			  }
+			  if (force) {
+				  this.channel.force(false);
+			  }
+		  }
+		  catch (IOException | RuntimeException e) {
+			  restore(batch);
+			  throw e;
+		  }
+		  this.logBytes = position;
+		  this.spare = batch;
+		  this.writtenRecord = last;
+	  }
+
+	  // puts the records of batch, which were not written, back before the pending records.
+	  // called under flushLock.
+	  // complexity: O(the pending bytes).
+	  private void restore(ByteBuffer batch) {
+		  synchronized (this.pendingLock) {
+			  batch.rewind();
+			  this.spare = this.pending;
+			  this.pending = batch.compact();
+			  this.spare.flip();
+			  reserve(this.spare.remaining());
+			  this.pending.put(this.spare);
+			  this.spare.clear();
+		  }
+	  }
+
+	  // applies the records of the log to the tree, and returns the position after the last complete record.
+	  // complexity: O(the length of the log), and O(log(n)) per record.
+	  private long replay() throws IOException {
+		  long size = this.channel.size();
+		  if (size == 0) {
+			  return 0;
+		  }
+		  if (size > Integer.MAX_VALUE) {
+			  throw new IOException("log is too large to be mapped: " + logFile(this.epoch));
+		  }
+		  ByteBuffer data = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		  CRC32 crc = new CRC32();
+		  while (data.remaining() >= RECORD_HEADER) {
+			  int start = data.position();
+			  int length = data.getInt();
+			  int checksum = data.getInt();
+			  if (length <= 0 || length > data.remaining()) {
+				  // torn record.
+				  return start;
+			  }
+			  ByteBuffer payload = data.slice().limit(length);
+			  crc.reset();
+			  crc.update(payload.duplicate());
+			  if ((int) crc.getValue() != checksum) {
+				  return start;
+			  }
+			  applyRecord(payload);
+			  data.position(data.position() + length);
+		  }
+		  return data.position();
+	  }
+
+	  // applies one record to the tree.
+	  // complexity: O(log(n)), or O(|t|) for a join.
+	  private void applyRecord(ByteBuffer payload) throws IOException {
+		  byte type = payload.get();
+		  int k = payload.getInt();
+		  if (type == INSERT) {
+			  this.tree.insert(k, getString(payload));
+		  }
+		  else if (type == DELETE) {
+			  this.tree.delete(k);
+		  }
+		  else if (type == SPLIT) {
+			  if (this.tree.treeSearch(k) == null) {
+				  throw new IOException("split at a missing key " + k + " in " + logFile(this.epoch));
+			  }
+			  this.tree = this.tree.split(k)[0];
+		  }
+		  else if (type == JOIN) {
+			  String i = getString(payload);
+			  int n = payload.getInt();
+			  int[] keys = new int[n];
+			  String[] values = new String[n];
+			  for (int j = 0; j < n; j++) {
+				  keys[j] = payload.getInt();
+				  values[j] = getString(payload);
+			  }
+			  this.tree.join(this.tree.new AVLNode(k, i), fromSorted(keys, values));
+		  }
+		  else {
+			  throw new IOException("unknown record type " + type + " in " + logFile(this.epoch));
+		  }
+	  }
+
+	  // reads a string written by putString.
+	  // complexity: O(the length of the string).
+	  private static String getString(ByteBuffer buffer) {
+		  int length = (int) readVarint(buffer) - 1;
+		  if (length < 0) {
+			  return null;
+		  }
+		  String s = StandardCharsets.UTF_8.decode(buffer.slice().limit(length)).toString();
+		  buffer.position(buffer.position() + length);
+		  return s;
+	  }
+  }
+  
+  /**
+   * public static final class LongAVLTree
+   *
+   * An AVL tree with long keys and byte[] values. The nodes are a final class and
+   * the virtual node is null, so every key can be stored and all the comparisons are
+   * on primitive longs, without calls through the IAVLNode interface.
+   */
+  public static final class LongAVLTree {
+	  private Node root;
+	  private int length;
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * Returns true if and only if the tree is empty.
+	   */
+	  public boolean empty() {
+		  // COMPLEXITY: O(1).
+		  return this.root == null;
+	  }
+
+	  /**
+	   * public byte[] search(long k)
+	   *
+	   * Returns the value of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public byte[] search(long k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  while (x != null) {
+			  if (x.key == k) {
+				  return x.value;
+			  }
+			  x = x.key > k ? x.left : x.right;
+		  }
+		  return null;
+	  }
+
+	  /**
+	   * public int insert(long k, byte[] v)
+	   *
+	   * Inserts an item with key k and value v to the tree.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k already exists in the tree.
+	   */
+	  public int insert(long k, byte[] v) {
+		  // COMPLEXITY: O(log(n)).
+
+		  // insert node as root.
+		  if (this.root == null) {
+			  this.root = new Node(k, v, null);
+			  this.length++;
+			  return 0;
+		  }
+
+		  // find the parent of the new node.
+		  Node parent = this.root;
+		  while (true) {
+			  if (k == parent.key) {
+				  return -1;
+			  }
+			  Node next = k < parent.key ? parent.left : parent.right;
+			  if (next == null) {
+				  break;
+			  }
+			  parent = next;
+		  }
+
+		  Node x = new Node(k, v, parent);
+		  if (k < parent.key) {
+			  parent.left = x;
+		  }
+		  else {
+			  parent.right = x;
+		  }
+		  this.length++;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(parent, false);
+	  }
+
+	  /**
+	   * public int delete(long k)
+	   *
+	   * Deletes an item with key k from the tree, if it is there.
+	   * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	   * They are counted like AVLTree.insert() and AVLTree.delete() count them, so the results are equal.
+	   * Returns -1 if an item with key k was not found in the tree.
+	   */
+	  public int delete(long k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node z = this.root;
+		  while (z != null && z.key != k) {
+			  z = z.key > k ? z.left : z.right;
+		  }
+		  if (z == null) {
+			  return -1;
+		  }
+
+		  // the node from which the tree is rebalanced.
+		  Node from;
+		  if (z.left == null || z.right == null) {
+			  // z has at most one child, replace z with it.
+			  from = z.parent;
+			  replace(z, z.left != null ? z.left : z.right);
+		  }
+		  else {
+			  // z has two children, replace z with its successor.
+			  Node y = z.right;
+			  while (y.left != null) {
+				  y = y.left;
+			  }
+			  if (y.parent == z) {
+				  from = y;
+			  }
+			  else {
+				  from = y.parent;
+				  replace(y, y.right);
+				  y.right = z.right;
+				  y.right.parent = y;
+			  }
+			  replace(z, y);
+			  y.left = z.left;
+			  y.left.parent = y;
+			  y.height = z.height;
+		  }
+		  this.length--;
+
+		  // rebalanceUp complexity: O(log(n)).
+		  return rebalanceUp(from, true);
+	  }
+
+	  /**
+	   * public byte[] min()
+	   *
+	   * Returns the value of the item with the smallest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public byte[] min() {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  if (x == null) {
+			  return null;
+		  }
+		  while (x.left != null) {
+			  x = x.left;
+		  }
+		  return x.value;
+	  }
+
+	  /**
+	   * public byte[] max()
+	   *
+	   * Returns the value of the item with the largest key in the tree,
+	   * or null if the tree is empty.
+	   */
+	  public byte[] max() {
+		  // COMPLEXITY: O(log(n)).
+
+		  Node x = this.root;
+		  if (x == null) {
+			  return null;
+		  }
+		  while (x.right != null) {
+			  x = x.right;
+		  }
+		  return x.value;
+	  }
+
+	  /**
+	   * public long[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   */
+	  public long[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  long[] keys = new long[this.length];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (Node x = first(); x != null; x = successor(x)) {
+			  keys[i++] = x.key;
+		  }
+		  return keys;
+	  }
+
+	  /**
+	   * public byte[][] valuesToArray()
+	   *
+	   * Returns an array which contains all values in the tree,
+	   * sorted by their respective keys,
+	   * or an empty array if the tree is empty.
+	   */
+	  public byte[][] valuesToArray() {
+		  // COMPLEXITY: O(n).
+
+		  byte[][] values = new byte[this.length][];
+		  int i = 0;
+		  // in order scan using the parent links, O(1) amortized per node.
+		  for (Node x = first(); x != null; x = successor(x)) {
+			  values[i++] = x.value;
+		  }
+		  return values;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of nodes in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return this.length;
+	  }
+
+	  // get the rank of the tree.
+	  // complexity: O(1).
+	  public int getRank() {
+		  return height(this.root);
+	  }
+
+	  //================================================================== ||
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // complexity: O(1).
+	  private static int height(Node x) {
+		  return x == null ? -1 : x.height;
+	  }
+
+	  // finds the node with the smallest key, or null if the tree is empty.
+	  // complexity: O(log(n)).
+	  private Node first() {
+		  Node x = this.root;
+		  while (x != null && x.left != null) {
+			  x = x.left;
+		  }
+		  return x;
 	  }
-	  
-	  // creates a real node
-	  public AVLNode(int k, String i) {
-		  this.key = k;
-		  this.info = i;
-		  this.left = new AVLNode();
-		  this.right = new AVLNode();
-		  this.height = 0;
-		  
-		  //set the virtual nodes parent to this node
-		  this.left.setParent(this);
-		  this.right.setParent(this);
+
+	  // finds the node with the next key, or null if x has the largest key.
+	  // complexity: O(log(n)), O(1) amortized over an in order scan.
+	  private static Node successor(Node x) {
+		  if (x.right != null) {
+			  x = x.right;
+			  while (x.left != null) {
+				  x = x.left;
+			  }
+			  return x;
+		  }
+		  Node parent = x.parent;
+		  while (parent != null && parent.right == x) {
+			  x = parent;
+			  parent = x.parent;
+		  }
+		  return parent;
 	  }
-	  
-		public int getKey()
-		{
-			return this.key;
-		}
-		public String getValue()
-		{
-			return this.info;
-		}
-		public void setLeft(IAVLNode node)
-		{
-			this.left = node;
-		}
-		public IAVLNode getLeft()
-		{
-			return this.left;
-		}
-		public void setRight(IAVLNode node)
-		{
-			this.right = node;
-		}
-		public IAVLNode getRight()
-		{
-			return this.right;
-		}
-		public void setParent(IAVLNode node)
-		{
-			this.parent = node;
-		}
-		public IAVLNode getParent()
-		{
-			return this.parent;
-		}
-		public boolean isRealNode()
-		{
-			return this.key != -1;
-		}
-	    public void setHeight(int height)
-	    {
-	      this.height = height;
-	    }
-	    public int getHeight()
-	    {
-	      return this.height;
-	    }
-	    public int getBalanceFactor() {
-	    	return  (this.getLeft() == null ? 0 : this.getLeft().getHeight()) - (this.getRight() == null ? 0 : this.getRight().getHeight());
-	    }  
-	    public int getSize() {
-	    	if (!this.isRealNode()) {
-	    		return 0;
-	    	}
-    		int leftSize = 0, rightSize = 0;
-    		if (this.getLeft().isRealNode()) {
-    			leftSize = this.getLeft().getSize();
-    		}
-    		if (this.getRight().isRealNode()) {
-    			rightSize = this.getRight().getSize();
-    		}
-    		return leftSize + rightSize + 1;
-	    }
-    	public boolean isLeaf() {
-    		return !this.getLeft().isRealNode() && !this.getRight().isRealNode();
-    	}
-    	public IAVLNode isUnary() {
-    		if (this.right.isRealNode() && !this.left.isRealNode()) {
-			   return this.right;
-		    }
-		    else if (!this.right.isRealNode() && this.left.isRealNode()) {
-			   return this.left;
-		    }
-		    return null;
-    	}
-    	public void promote(int num) {
-    		this.setHeight(this.getHeight()+num);
-    	}
-    	public void demote(int num) {
-    		this.setHeight(this.getHeight()-num);
-    	}
-    	public int rankDiffRight() {
-    		return this.getHeight() - this.right.getHeight();
-    	}
-    	public int rankDiffLeft() {
-    		return this.getHeight() - this.left.getHeight();
-    	}
-    	public boolean isHeightUpdated() {
-    		return this.height == Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1;
-    	}
-    	public void updateHeight() {
-    		this.setHeight(Math.max(this.getLeft().getHeight(), this.getRight().getHeight()) + 1);
-    	}
+
+	  // puts node v in the place of node u (v might be null).
+	  // complexity: O(1).
+	  private void replace(Node u, Node v) {
+		  replaceChild(u.parent, u, v);
+		  if (v != null) {
+			  v.parent = u.parent;
+		  }
+	  }
+
+	  // replaces the child u of parent with v. if parent is null, v becomes the root.
+	  // complexity: O(1).
+	  private void replaceChild(Node parent, Node u, Node v) {
+		  if (parent == null) {
+			  this.root = v;
+		  }
+		  else if (parent.left == u) {
+			  parent.left = v;
+		  }
+		  else {
+			  parent.right = v;
+		  }
+	  }
+
+	  // rotates x above its parent.
+	  // complexity: O(1).
+	  private void rotateUp(Node x) {
+		  Node parent = x.parent;
+		  Node grandParent = parent.parent;
+		  if (parent.left == x) {
+			  parent.left = x.right;
+			  if (x.right != null) {
+				  x.right.parent = parent;
+			  }
+			  x.right = parent;
+		  }
+		  else {
+			  parent.right = x.left;
+			  if (x.left != null) {
+				  x.left.parent = parent;
+			  }
+			  x.left = parent;
+		  }
+		  parent.parent = x;
+		  x.parent = grandParent;
+		  replaceChild(grandParent, parent, x);
+
+		  // parent is now the child of x, so it is updated first.
+		  parent.updateHeight();
+		  x.updateHeight();
+	  }
+
+	  // rebalance tree from x up to the root, until the height of a subtree did not change.
+	  // returns the number of re-balancing operations, counted like AVLTree: a height change is 1,
+	  // a rotation is 2 after an insertion and 3 after a deletion, and a double rotation is 5.
+	  // complexity: O(log(n)).
+	  private int rebalanceUp(Node x, boolean deletion) {
+		  int counter = 0;
+		  int rotation = deletion ? 3 : 2;
+
+		  while (x != null) {
+			  int oldHeight = x.height;
+			  x.updateHeight();
+			  int bf = height(x.right) - height(x.left);
+			  if (bf > 1) {
+				  Node right = x.right;
+				  if (height(right.left) > height(right.right)) {
+					  // double rotation.
+					  Node son = right.left;
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(right);
+					  x = right;
+					  counter += rotation;
+				  }
+			  }
+			  else if (bf < -1) {
+				  Node left = x.left;
+				  if (height(left.right) > height(left.left)) {
+					  // double rotation.
+					  Node son = left.right;
+					  rotateUp(son);
+					  rotateUp(son);
+					  x = son;
+					  counter += 5;
+				  }
+				  else {
+					  rotateUp(left);
+					  x = left;
+					  counter += rotation;
+				  }
+			  }
+			  else if (x.height != oldHeight) {
+				  // promotion or demotion.
+				  counter++;
+			  }
+
+			  if (x.height == oldHeight) {
+				  break;
+			  }
+			  x = x.parent;
+		  }
+		  return counter;
+	  }
+
+	  /**
+	   * private static final class Node
+	   *
+	   * A real node of the tree. A missing child is null.
+	   */
+	  private static final class Node {
+		  private final long key;
+		  private final byte[] value;
+		  private Node left;
+		  private Node right;
+		  private Node parent;
+		  private int height;
+
+		  private Node(long key, byte[] value, Node parent) {
+			  this.key = key;
+			  this.value = value;
+			  this.parent = parent;
+		  }
+
+		  // complexity: O(1).
+		  private void updateHeight() {
+			  this.height = Math.max(height(this.left), height(this.right)) + 1;
+		  }
+	  }
+  }
+  
+  /**
+   * public static final class IntAVLTree
+   *
+   * An AVL tree with int keys and byte[] values, where every int (-1 included) can be a key.
+   * An int key in a node takes the same space as a long after the object alignment,
+   * so the tree keeps its items in a LongAVLTree.
+   */
+  public static final class IntAVLTree {
+	  private final LongAVLTree tree = new LongAVLTree();
+
+	  // COMPLEXITY: O(1).
+	  public boolean empty() {
+		  return this.tree.empty();
+	  }
+
+	  // COMPLEXITY: O(log(n)).
+	  public byte[] search(int k) {
+		  return this.tree.search(k);
+	  }
+
+	  // COMPLEXITY: O(log(n)). like LongAVLTree.insert().
+	  public int insert(int k, byte[] v) {
+		  return this.tree.insert(k, v);
+	  }
+
+	  // COMPLEXITY: O(log(n)). like LongAVLTree.delete().
+	  public int delete(int k) {
+		  return this.tree.delete(k);
+	  }
+
+	  // COMPLEXITY: O(log(n)).
+	  public byte[] min() {
+		  return this.tree.min();
+	  }
+
+	  // COMPLEXITY: O(log(n)).
+	  public byte[] max() {
+		  return this.tree.max();
+	  }
+
+	  // COMPLEXITY: O(n).
+	  public int[] keysToArray() {
+		  long[] keys = this.tree.keysToArray();
+		  int[] result = new int[keys.length];
+		  for (int i = 0; i < keys.length; i++) {
+			  result[i] = (int) keys[i];
+		  }
+		  return result;
+	  }
+
+	  // COMPLEXITY: O(n).
+	  public byte[][] valuesToArray() {
+		  return this.tree.valuesToArray();
+	  }
+
+	  // COMPLEXITY: O(1).
+	  public int size() {
+		  return this.tree.size();
+	  }
+
+	  // get the rank of the tree.
+	  // complexity: O(1).
+	  public int getRank() {
+		  return this.tree.getRank();
+	  }
+  }
+  
+  /**
+   * public static final class FrozenAVLTree
+   *
+   * An immutable copy of the items of an AVLTree (see AVLTree.freeze()), for trees that are
+   * searched much more than they are changed. The keys are in an int[] in the order of a
+   * breadth first walk of a complete tree (the Eytzinger layout): the children of position i
+   * are 2*i and 2*i+1, and position 0 is not used. The values are at the same positions
+   * in a parallel String[].
+   * A search is a loop without branches on the keys, and the first levels of the tree are
+   * at the start of the array, so they stay in the cache, and the 16 descendants of a node
+   * 4 levels down are next to each other in memory.
+   */
+  public static final class FrozenAVLTree {
+	  // the largest number of items. the positions are ints, and a search goes down to
+	  // position 2*n+1, which is Integer.MAX_VALUE for 2^30 - 1 items.
+	  static final int MAX_SIZE = (1 << 30) - 1;
+
+	  private final int[] keys;
+	  private final String[] values;
+	  private final int length;
+
+	  // keys are sorted and distinct, and values[i] is the value of keys[i].
+	  private FrozenAVLTree(int[] keys, String[] values) {
+		  checkSize(keys.length);
+		  this.length = keys.length;
+		  this.keys = new int[this.length + 1];
+		  this.values = new String[this.length + 1];
+		  layout(keys, values, 1, new int[1]);
+	  }
+
+	  /**
+	   * public boolean empty()
+	   *
+	   * Returns true if and only if the tree is empty.
+	   */
+	  public boolean empty() {
+		  // COMPLEXITY: O(1).
+		  return this.length == 0;
+	  }
+
+	  /**
+	   * public int size()
+	   *
+	   * Returns the number of items in the tree.
+	   */
+	  public int size() {
+		  // COMPLEXITY: O(1).
+		  return this.length;
+	  }
+
+	  /**
+	   * public String search(int k)
+	   *
+	   * Returns the value of an item with key k if it exists in the tree.
+	   * otherwise, returns null.
+	   */
+	  public String search(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int position = ceiling(k);
+		  return position != 0 && this.keys[position] == k ? this.values[position] : null;
+	  }
+
+	  /**
+	   * public int floor(int k)
+	   *
+	   * Returns the position of the item with the largest key <= k, or 0 if there is no such item.
+	   * The key and the value of the item are key(position) and value(position).
+	   */
+	  public int floor(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int[] keys = this.keys;
+		  int i = 1;
+		  while (i <= this.length) {
+			  i = 2 * i + (keys[i] <= k ? 1 : 0);
+		  }
+		  // the bits of i are the turns of the path (1 is right). the floor is the last
+		  // node where the path turned right, so remove the turns to the left after it.
+		  return i >>> (Integer.numberOfTrailingZeros(i) + 1);
+	  }
+
+	  /**
+	   * public int ceiling(int k)
+	   *
+	   * Returns the position of the item with the smallest key >= k, or 0 if there is no such item.
+	   * The key and the value of the item are key(position) and value(position).
+	   */
+	  public int ceiling(int k) {
+		  // COMPLEXITY: O(log(n)).
+
+		  int[] keys = this.keys;
+		  int i = 1;
+		  while (i <= this.length) {
+			  i = 2 * i + (keys[i] < k ? 1 : 0);
+		  }
+		  // the ceiling is the last node where the path turned left.
+		  return i >>> (Integer.numberOfTrailingZeros(~i) + 1);
+	  }
+
+	  /**
+	   * public int key(int position)
+	   *
+	   * Returns the key of the item at position, which was returned by floor() or ceiling().
+	   *
+	   * precondition: position != 0.
+	   */
+	  public int key(int position) {
+		  // COMPLEXITY: O(1).
+		  return this.keys[position];
+	  }
+
+	  /**
+	   * public String value(int position)
+	   *
+	   * Returns the value of the item at position, which was returned by floor() or ceiling().
+	   *
+	   * precondition: position != 0.
+	   */
+	  public String value(int position) {
+		  // COMPLEXITY: O(1).
+		  return this.values[position];
+	  }
+
+	  /**
+	   * public int[] keysToArray()
+	   *
+	   * Returns a sorted array which contains all keys in the tree,
+	   * or an empty array if the tree is empty.
+	   */
+	  public int[] keysToArray() {
+		  // COMPLEXITY: O(n).
+
+		  int[] result = new int[this.length];
+		  collect(result, 1, new int[1]);
+		  return result;
+	  }
+
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // complexity: O(1).
+	  private static void checkSize(int size) {
+		  if (size > MAX_SIZE) {
+			  throw new IllegalArgumentException("a FrozenAVLTree has at most " + MAX_SIZE + " items, got " + size);
+		  }
+	  }
+
+	  // puts the sorted items, starting at next[0], in the subtree of position i.
+	  // complexity: O(size of the subtree), with recursion depth O(log(n)).
+	  private void layout(int[] sortedKeys, String[] sortedValues, int i, int[] next) {
+		  if (i > this.length) {
+			  return;
+		  }
+		  layout(sortedKeys, sortedValues, 2 * i, next);
+		  this.keys[i] = sortedKeys[next[0]];
+		  this.values[i] = sortedValues[next[0]];
+		  next[0]++;
+		  layout(sortedKeys, sortedValues, 2 * i + 1, next);
+	  }
+
+	  // writes the keys of the subtree of position i to result in order, starting at next[0].
+	  // complexity: O(size of the subtree), with recursion depth O(log(n)).
+	  private void collect(int[] result, int i, int[] next) {
+		  if (i > this.length) {
+			  return;
+		  }
+		  collect(result, 2 * i, next);
+		  result[next[0]++] = this.keys[i];
+		  collect(result, 2 * i + 1, next);
+	  }
+  }
+  
+  /**
+   * public static final class Metrics
+   *
+   * Counters of the re-balancing operations of all the AVL trees, and histograms of
+   * the search path lengths and of the split, join, insertAll and deleteAll latencies.
+   * The metrics are off unless the JVM is started with -Davltree.metrics=true.
+   * ENABLED is a static final constant, so when it is false the JIT removes the calls
+   * to the hooks and the trees do not pay for them.
+   * An insert, delete, poll, split, join, insertAll or deleteAll that takes at least -Davltree.slowNanos
+   * (1ms by default) is recorded as an avltree.SlowOperation JFR event.
+   */
+  public static final class Metrics {
+	  static final boolean ENABLED = Boolean.getBoolean("avltree.metrics");
+	  static final long SLOW_NANOS = Long.getLong("avltree.slowNanos", 1_000_000L);
+
+	  private static final LongAdder PROMOTIONS = new LongAdder();
+	  private static final LongAdder DEMOTIONS = new LongAdder();
+	  private static final LongAdder ROTATIONS = new LongAdder();
+	  private static final LongAdder DOUBLE_ROTATIONS = new LongAdder();
+	  private static final Histogram SEARCH_PATHS = new Histogram();
+	  private static final Histogram SPLITS = new Histogram();
+	  private static final Histogram JOINS = new Histogram();
+	  private static final Histogram BATCHES = new Histogram();
+
+	  private Metrics() {
+	  }
+
+	  // COMPLEXITY: O(1).
+	  public static boolean enabled() {
+		  return ENABLED;
+	  }
+
+	  // the number of promotions since the start (or the last reset).
+	  // complexity: O(number of threads).
+	  public static long promotions() {
+		  return PROMOTIONS.sum();
+	  }
+
+	  // the number of demotions since the start (or the last reset).
+	  // complexity: O(number of threads).
+	  public static long demotions() {
+		  return DEMOTIONS.sum();
+	  }
+
+	  // the number of single rotations since the start (or the last reset).
+	  // complexity: O(number of threads).
+	  public static long rotations() {
+		  return ROTATIONS.sum();
+	  }
+
+	  // the number of double rotations since the start (or the last reset).
+	  // complexity: O(number of threads).
+	  public static long doubleRotations() {
+		  return DOUBLE_ROTATIONS.sum();
+	  }
+
+	  // the number of nodes on the search paths of search, insert, delete and split.
+	  // COMPLEXITY: O(1).
+	  public static Histogram searchPathLengths() {
+		  return SEARCH_PATHS;
+	  }
+
+	  // the latencies of split, in nanoseconds.
+	  // COMPLEXITY: O(1).
+	  public static Histogram splitLatencies() {
+		  return SPLITS;
+	  }
+
+	  // the latencies of join, in nanoseconds.
+	  // COMPLEXITY: O(1).
+	  public static Histogram joinLatencies() {
+		  return JOINS;
+	  }
+
+	  // the latencies of insertAll and deleteAll, in nanoseconds, one for each batch.
+	  // COMPLEXITY: O(1).
+	  public static Histogram batchLatencies() {
+		  return BATCHES;
+	  }
+
+	  // sets all the counters and histograms to 0.
+	  // complexity: O(number of buckets).
+	  public static void reset() {
+		  PROMOTIONS.reset();
+		  DEMOTIONS.reset();
+		  ROTATIONS.reset();
+		  DOUBLE_ROTATIONS.reset();
+		  SEARCH_PATHS.reset();
+		  SPLITS.reset();
+		  JOINS.reset();
+		  BATCHES.reset();
+	  }
+
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // complexity: O(1).
+	  static void promoted() {
+		  if (ENABLED) {
+			  PROMOTIONS.increment();
+		  }
+	  }
+
+	  // complexity: O(1).
+	  static void demoted(int count) {
+		  if (ENABLED) {
+			  DEMOTIONS.add(count);
+		  }
+	  }
+
+	  // complexity: O(1).
+	  static void rotated() {
+		  if (ENABLED) {
+			  ROTATIONS.increment();
+		  }
+	  }
+
+	  // complexity: O(1).
+	  static void doubleRotated() {
+		  if (ENABLED) {
+			  DOUBLE_ROTATIONS.increment();
+		  }
+	  }
+
+	  // complexity: O(1).
+	  static void searchPath(int length) {
+		  if (ENABLED) {
+			  SEARCH_PATHS.record(length);
+		  }
+	  }
+
+	  // the start time of a timed operation, or 0 if the metrics are off.
+	  // complexity: O(1).
+	  static long start() {
+		  return ENABLED ? System.nanoTime() : 0L;
+	  }
+
+	  // records the latency of an operation that started at start in histogram (if not null),
+	  // and commits a JFR event if it was slow.
+	  // complexity: O(1).
+	  static void finish(String operation, int key, int size, long start, Histogram histogram) {
+		  if (!ENABLED) {
+			  return;
+		  }
+		  long duration = System.nanoTime() - start;
+		  if (histogram != null) {
+			  histogram.record(duration);
+		  }
+		  if (duration >= SLOW_NANOS) {
+			  SlowOperationEvent event = new SlowOperationEvent();
+			  if (event.isEnabled()) {
+				  event.operation = operation;
+				  event.key = key;
+				  event.size = size;
+				  event.latency = duration;
+				  event.commit();
+			  }
+		  }
+	  }
+  }
+
+  /**
+   * public static final class Histogram
+   *
+   * A histogram of non negative long values with buckets of bounded relative size,
+   * like HdrHistogram: the values below 32 have a bucket each, and every power of 2
+   * above that is split into 16 buckets, so a value is reported with an error of at
+   * most 1/16 of it. The buckets are an AtomicLongArray, so record() takes no lock.
+   */
+  public static final class Histogram {
+	  private static final int SUB_BUCKETS = 16;
+	  private static final int BUCKETS = 2 * SUB_BUCKETS + 58 * SUB_BUCKETS;
+
+	  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	  // adds value to the histogram. negative values are counted as 0.
+	  // complexity: O(1).
+	  public void record(long value) {
+		  this.counts.incrementAndGet(bucket(Math.max(value, 0L)));
+	  }
+
+	  // the number of recorded values.
+	  // complexity: O(number of buckets).
+	  public long count() {
+		  long count = 0;
+		  for (int i = 0; i < BUCKETS; i++) {
+			  count += this.counts.get(i);
+		  }
+		  return count;
+	  }
+
+	  // the smallest value such that percentile percent of the recorded values are
+	  // at most it (up to the bucket size). returns 0 if the histogram is empty.
+	  // complexity: O(number of buckets).
+	  public long percentile(double percentile) {
+		  long count = count();
+		  if (count == 0) {
+			  return 0;
+		  }
+		  long target = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+		  long seen = 0;
+		  for (int i = 0; i < BUCKETS; i++) {
+			  seen += this.counts.get(i);
+			  if (seen >= target) {
+				  return upperBound(i);
+			  }
+		  }
+		  return upperBound(BUCKETS - 1);
+	  }
+
+	  // complexity: O(number of buckets).
+	  public void reset() {
+		  for (int i = 0; i < BUCKETS; i++) {
+			  this.counts.set(i, 0L);
+		  }
+	  }
+
+	  //==========================OUR_FUNCTIONS=========================== ||
+	  //================================================================== \/
+
+	  // the bucket of value: the 5 highest bits of value, and its exponent.
+	  // complexity: O(1).
+	  private static int bucket(long value) {
+		  if (value < 2 * SUB_BUCKETS) {
+			  return (int) value;
+		  }
+		  int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+		  return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	  }
+
+	  // the largest value in bucket.
+	  // complexity: O(1).
+	  private static long upperBound(int bucket) {
+		  if (bucket < 2 * SUB_BUCKETS) {
+			  return bucket;
+		  }
+		  int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+		  long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		  return ((sub + 1) << shift) - 1;
+	  }
+  }
+
+  // a JFR event for an operation of Metrics that took at least Metrics.SLOW_NANOS.
+  @Name("avltree.SlowOperation")
+  @Label("Slow AVL Tree Operation")
+  @Category("AVL Tree")
+  static final class SlowOperationEvent extends Event {
+	  @Label("Operation")
+	  String operation;
+
+	  @Label("Key")
+	  int key;
+
+	  @Label("Size")
+	  int size;
+
+	  @Label("Latency")
+	  @Timespan(Timespan.NANOSECONDS)
+	  long latency;
   }
 }
   
@@ -0,0 +1,69 @@
+package avltree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import avltree.AVLTree;
+
+/**
+ * ConcurrentReadBenchmark
+ *
+ * Read throughput of ConcurrentAVLTree (optimistic reads) against an AVLTree
+ * behind a synchronized block. Run with several thread counts to see the scaling:
+ * java -jar benchmarks/target/benchmarks.jar ConcurrentReadBenchmark -t 1 -t 2 -t 4 -t 8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+	@State(Scope.Benchmark)
+	public static class Trees {
+		@Param({"100000"})
+		public int size;
+
+		public AVLTree.ConcurrentAVLTree concurrent;
+		public AVLTree locked;
+
+		@Setup
+		public void setUp() {
+			this.concurrent = new AVLTree.ConcurrentAVLTree();
+			this.locked = new AVLTree();
+			for (int i = 0; i < this.size; i++) {
+				this.concurrent.insert(i, "info");
+				this.locked.insert(i, "info");
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private final Random random = new Random();
+	}
+
+	@Benchmark
+	public String optimisticSearch(Trees trees, Keys keys) {
+		return trees.concurrent.search(keys.random.nextInt(trees.size));
+	}
+
+	@Benchmark
+	public String synchronizedSearch(Trees trees, Keys keys) {
+		int k = keys.random.nextInt(trees.size);
+		synchronized (trees.locked) {
+			return trees.locked.search(k);
+		}
+	}
+}
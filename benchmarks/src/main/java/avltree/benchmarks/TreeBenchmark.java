@@ -0,0 +1,240 @@
+package avltree.benchmarks;
+
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import avltree.AVLTree;
+
+/**
+ * TreeBenchmark
+ *
+ * The operations of AVLTree, with java.util.TreeMap as the baseline.
+ * The tree holds the even keys 0, 2, ..., 2*(size-1). The keys of the operations
+ * are taken from a precomputed stream, by the distribution:
+ * SEQUENTIAL walks the keys in increasing order, RANDOM is uniform, and ZIPF
+ * chooses keys by a Zipf distribution (s = 0.99), with the popular keys spread over the tree.
+ * insert / delete keep the size fixed, so each of them measures an insert and a delete.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TreeBenchmark {
+	private static final String INFO = "info";
+
+	@State(Scope.Benchmark)
+	public static class Trees {
+		@Param({"1000", "100000", "10000000"})
+		public int size;
+
+		@Param({"SEQUENTIAL", "RANDOM", "ZIPF"})
+		public String distribution;
+
+		public AVLTree tree;
+		public AVLTree.FrozenAVLTree frozen;
+		public AVLTree indexed;
+		public TreeMap<Integer, String> map;
+		public int[] stream;
+		public int next;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			int[] keys = new int[this.size];
+			String[] values = new String[this.size];
+			this.map = new TreeMap<>();
+			for (int i = 0; i < this.size; i++) {
+				keys[i] = 2 * i;
+				values[i] = INFO;
+				this.map.put(2 * i, INFO);
+			}
+			this.tree = AVLTree.fromSorted(keys, values);
+			this.frozen = this.tree.freeze();
+			this.indexed = AVLTree.fromSorted(keys, values);
+			this.indexed.setIndexed(true);
+			this.stream = KeyStream.create(this.distribution, this.size);
+		}
+
+		// the next key of the stream (an even key, which is in the tree).
+		public int nextKey() {
+			int k = this.stream[this.next];
+			this.next = (this.next + 1) & (this.stream.length - 1);
+			return k;
+		}
+	}
+
+	@Benchmark
+	public String search(Trees s) {
+		return s.tree.search(s.nextKey());
+	}
+
+	@Benchmark
+	public String searchTreeMap(Trees s) {
+		return s.map.get(s.nextKey());
+	}
+
+	@Benchmark
+	public String searchIndexed(Trees s) {
+		return s.indexed.search(s.nextKey());
+	}
+
+	@Benchmark
+	public String searchFrozen(Trees s) {
+		return s.frozen.search(s.nextKey());
+	}
+
+	// the floor of the odd key after a key of the stream, which is not in the tree.
+	@Benchmark
+	public int floorFrozen(Trees s) {
+		return s.frozen.floor(s.nextKey() + 1);
+	}
+
+	@Benchmark
+	public Integer floorTreeMap(Trees s) {
+		return s.map.floorKey(s.nextKey() + 1);
+	}
+
+	// inserts the odd key after a key of the stream, and deletes it.
+	@Benchmark
+	public int insert(Trees s) {
+		int k = s.nextKey() + 1;
+		return s.tree.insert(k, INFO) + s.tree.delete(k);
+	}
+
+	@Benchmark
+	public String insertTreeMap(Trees s) {
+		int k = s.nextKey() + 1;
+		s.map.put(k, INFO);
+		return s.map.remove(k);
+	}
+
+	// deletes a key of the stream, and inserts it again.
+	@Benchmark
+	public int delete(Trees s) {
+		int k = s.nextKey();
+		return s.tree.delete(k) + s.tree.insert(k, INFO);
+	}
+
+	@Benchmark
+	public String deleteTreeMap(Trees s) {
+		int k = s.nextKey();
+		s.map.remove(k);
+		return s.map.put(k, INFO);
+	}
+
+	// inserts a key larger than all the keys, and removes it again with pollMax.
+	@Benchmark
+	public String append(Trees s) {
+		s.tree.insert(2 * s.size, INFO);
+		return s.tree.pollMax();
+	}
+
+	@Benchmark
+	public String appendTreeMap(Trees s) {
+		s.map.put(2 * s.size, INFO);
+		return s.map.pollLastEntry().getValue();
+	}
+
+	@Benchmark
+	public String minMax(Trees s) {
+		s.tree.min();
+		return s.tree.max();
+	}
+
+	@Benchmark
+	public String minMaxTreeMap(Trees s) {
+		s.map.firstEntry();
+		return s.map.lastEntry().getValue();
+	}
+
+	@Benchmark
+	public int[] keysToArray(Trees s) {
+		return s.tree.keysToArray();
+	}
+
+	@Benchmark
+	public Object[] keysToArrayTreeMap(Trees s) {
+		return s.map.keySet().toArray();
+	}
+
+	// splits at a key of the stream and joins the two trees back with it.
+	// TreeMap has no split, so there is no baseline.
+	@Benchmark
+	public int splitJoin(Trees s) {
+		int k = s.nextKey();
+		AVLTree[] trees = s.tree.split(k);
+		AVLTree.IAVLNode node = trees[0].new AVLNode(k, INFO);
+		int result = trees[0].join(node, trees[1]);
+		s.tree = trees[0];
+		return result;
+	}
+
+	// the constructor from a root node, which reads the size of the subtree.
+	@Benchmark
+	public int constructor(Trees s) {
+		return new AVLTree(s.tree.getRoot()).size();
+	}
+
+	/**
+	 * KeyStream
+	 *
+	 * Creates the stream of keys for a distribution. The length is a power of 2.
+	 */
+	static final class KeyStream {
+		private static final int LENGTH = 1 << 20;
+		private static final double ZIPF_S = 0.99;
+
+		static int[] create(String distribution, int size) {
+			Random random = new Random(42);
+			int[] stream = new int[LENGTH];
+			if (distribution.equals("SEQUENTIAL")) {
+				for (int i = 0; i < LENGTH; i++) {
+					stream[i] = 2 * (i % size);
+				}
+			}
+			else if (distribution.equals("RANDOM")) {
+				for (int i = 0; i < LENGTH; i++) {
+					stream[i] = 2 * random.nextInt(size);
+				}
+			}
+			else if (distribution.equals("ZIPF")) {
+				// rank r (starting at 1) is chosen with probability proportional to 1 / r^s,
+				// by inverting the integral of the density. the ranks are mapped to random keys.
+				double exponent = 1 - ZIPF_S;
+				double total = Math.pow(size + 1, exponent) - 1;
+				for (int i = 0; i < LENGTH; i++) {
+					double u = random.nextDouble();
+					int rank = (int) Math.pow(u * total + 1, 1 / exponent) - 1;
+					rank = Math.min(Math.max(rank, 0), size - 1);
+					stream[i] = 2 * scatter(rank, size);
+				}
+			}
+			else {
+				throw new IllegalArgumentException("unknown distribution " + distribution);
+			}
+			return stream;
+		}
+
+		// maps rank to a key index, so the popular keys are spread over the tree.
+		private static int scatter(int rank, int size) {
+			long mixed = (rank * 0x9E3779B97F4A7C15L) >>> 1;
+			return (int) (mixed % size);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import avltree.AVLTree.ArrayAVLTree;
+import avltree.AVLTree.LongAVLTree;
+import avltree.AVLTree.OffHeapAVLTree;
+import avltree.AVLTree.PersistentAVLTree;
+
+/**
+ * AVLTreeEnginesTest
+ *
+ * The same seeded sequence of inserts and deletes is run on AVLTree and on the other engines,
+ * which must return the same number of re-balancing operations as AVLTree for every operation
+ * and keep the same items. split and join are compared on the engines that have them.
+ */
+class AVLTreeEnginesTest {
+	private static final int KEYS = 2_000;
+	private static final int OPERATIONS = 40_000;
+
+	@Test
+	void sameResultsAsAVLTree() {
+		for (long seed = 0; seed < 4; seed++) {
+			Random random = new Random(seed);
+			AVLTree tree = new AVLTree();
+			ArrayAVLTree array = new ArrayAVLTree();
+			OffHeapAVLTree offHeap = new OffHeapAVLTree();
+			PersistentAVLTree persistent = new PersistentAVLTree();
+			LongAVLTree longTree = new LongAVLTree();
+
+			for (int op = 0; op < OPERATIONS; op++) {
+				int k = random.nextInt(KEYS);
+				// more inserts than deletes at first, so the tree grows and then stays near KEYS / 2.
+				if (random.nextInt(OPERATIONS) >= op / 2) {
+					String i = "v" + k;
+					int expected = tree.insert(k, i);
+					String message = "seed " + seed + ", insert " + k;
+					assertEquals(expected, array.insert(k, i), message);
+					assertEquals(expected, offHeap.insert(k, i), message);
+					assertEquals(expected, persistent.insert(k, i), message);
+					assertEquals(expected, longTree.insert(k, bytes(i)), message);
+				}
+				else {
+					int expected = tree.delete(k);
+					String message = "seed " + seed + ", delete " + k;
+					assertEquals(expected, array.delete(k), message);
+					assertEquals(expected, offHeap.delete(k), message);
+					assertEquals(expected, persistent.delete(k), message);
+					assertEquals(expected, longTree.delete(k), message);
+				}
+				if (op % 1_000 == 0) {
+					assertSameItems(tree, array, offHeap, persistent, longTree);
+				}
+			}
+			assertSameItems(tree, array, offHeap, persistent, longTree);
+			splitAndJoin(random, tree, array, persistent);
+		}
+	}
+
+	@Test
+	void emptyTrees() {
+		AVLTree tree = new AVLTree();
+		ArrayAVLTree array = new ArrayAVLTree();
+		OffHeapAVLTree offHeap = new OffHeapAVLTree();
+		PersistentAVLTree persistent = new PersistentAVLTree();
+		LongAVLTree longTree = new LongAVLTree();
+
+		assertEquals(-1, tree.delete(1));
+		assertEquals(-1, array.delete(1));
+		assertEquals(-1, offHeap.delete(1));
+		assertEquals(-1, persistent.delete(1));
+		assertEquals(-1, longTree.delete(1));
+		assertSameItems(tree, array, offHeap, persistent, longTree);
+	}
+
+	private static void assertSameItems(AVLTree tree, ArrayAVLTree array, OffHeapAVLTree offHeap,
+			PersistentAVLTree persistent, LongAVLTree longTree) {
+		int[] keys = tree.keysToArray();
+		String[] infos = tree.infoToArray();
+
+		assertArrayEquals(keys, array.keysToArray());
+		assertArrayEquals(infos, array.infoToArray());
+		assertArrayEquals(keys, offHeap.keysToArray());
+		assertArrayEquals(infos, offHeap.infoToArray());
+		assertArrayEquals(keys, persistent.keysToArray());
+		assertArrayEquals(infos, persistent.infoToArray());
+
+		long[] longKeys = longTree.keysToArray();
+		byte[][] values = longTree.valuesToArray();
+		assertEquals(keys.length, longKeys.length);
+		for (int j = 0; j < keys.length; j++) {
+			assertEquals(keys[j], longKeys[j]);
+			assertEquals(infos[j], string(values[j]));
+		}
+
+		assertEquals(tree.size(), array.size());
+		assertEquals(tree.size(), offHeap.size());
+		assertEquals(tree.size(), persistent.size());
+		assertEquals(tree.size(), longTree.size());
+
+		assertEquals(tree.min(), array.min());
+		assertEquals(tree.min(), offHeap.min());
+		assertEquals(tree.min(), persistent.min());
+		assertEquals(tree.min(), string(longTree.min()));
+		assertEquals(tree.max(), array.max());
+		assertEquals(tree.max(), offHeap.max());
+		assertEquals(tree.max(), persistent.max());
+		assertEquals(tree.max(), string(longTree.max()));
+	}
+
+	// splits the trees at a few of their keys and joins the halves back.
+	private static void splitAndJoin(Random random, AVLTree tree, ArrayAVLTree array, PersistentAVLTree persistent) {
+		for (int round = 0; round < 20; round++) {
+			int[] keys = tree.keysToArray();
+			int x = keys[random.nextInt(keys.length)];
+			String i = tree.search(x);
+
+			AVLTree[] trees = tree.split(x);
+			ArrayAVLTree[] arrays = array.split(x);
+			PersistentAVLTree[] persistents = persistent.split(x);
+			for (int side = 0; side < 2; side++) {
+				assertArrayEquals(trees[side].keysToArray(), arrays[side].keysToArray());
+				assertArrayEquals(trees[side].infoToArray(), arrays[side].infoToArray());
+				assertArrayEquals(trees[side].keysToArray(), persistents[side].keysToArray());
+				assertArrayEquals(trees[side].infoToArray(), persistents[side].infoToArray());
+				assertEquals(trees[side].getRank(), arrays[side].getRank(), "split at " + x);
+				assertEquals(trees[side].getRank(), persistents[side].getRank(), "split at " + x);
+				assertEquals(trees[side].min(), arrays[side].min());
+				assertEquals(trees[side].max(), arrays[side].max());
+				assertEquals(trees[side].min(), persistents[side].min());
+				assertEquals(trees[side].max(), persistents[side].max());
+			}
+
+			// the right half is joined to the left one, or the other way around.
+			int expected;
+			int joinedArray;
+			int joinedPersistent;
+			if (random.nextBoolean()) {
+				expected = trees[0].join(trees[0].new AVLNode(x, i), trees[1]);
+				joinedArray = arrays[0].join(x, i, arrays[1]);
+				joinedPersistent = persistents[0].join(x, i, persistents[1]);
+				tree = trees[0];
+				array = arrays[0];
+				persistent = persistents[0];
+			}
+			else {
+				expected = trees[1].join(trees[1].new AVLNode(x, i), trees[0]);
+				joinedArray = arrays[1].join(x, i, arrays[0]);
+				joinedPersistent = persistents[1].join(x, i, persistents[0]);
+				tree = trees[1];
+				array = arrays[1];
+				persistent = persistents[1];
+			}
+			assertEquals(expected, joinedArray, "join at " + x);
+			assertEquals(expected, joinedPersistent, "join at " + x);
+			assertArrayEquals(tree.keysToArray(), keys);
+			assertArrayEquals(tree.keysToArray(), array.keysToArray());
+			assertArrayEquals(tree.infoToArray(), array.infoToArray());
+			assertArrayEquals(tree.keysToArray(), persistent.keysToArray());
+			assertArrayEquals(tree.infoToArray(), persistent.infoToArray());
+			assertEquals(tree.min(), array.min());
+			assertEquals(tree.max(), persistent.max());
+		}
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] bytes) {
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+}
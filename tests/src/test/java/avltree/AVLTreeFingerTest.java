@@ -0,0 +1,222 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import avltree.AVLTree.Cursor;
+
+/**
+ * AVLTreeFingerTest
+ *
+ * insert searches a key outside of the keys of the tree from the min or max node, insertAll and
+ * deleteAll search from the item before, and Cursor.insert from the current item of the cursor.
+ * After the operations that move or remove those nodes, the next searches are made near them and
+ * the tree is checked like in AVLTreeTest, so a start node that was left in another tree or was
+ * removed breaks the order or loses an item.
+ */
+class AVLTreeFingerTest {
+	private static final int KEYS = 1_000;
+
+	@Test
+	void poll() {
+		Random random = new Random(18);
+		AVLTree tree = new AVLTree();
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (int round = 0; round < 2_000; round++) {
+			// a new min or max, which is polled.
+			boolean max = random.nextBoolean();
+			int k = max ? (expected.isEmpty() ? 0 : expected.lastKey()) + 1 + random.nextInt(3)
+					: (expected.isEmpty() ? 0 : expected.firstKey()) - 1 - random.nextInt(3);
+			tree.insert(k, "v" + k);
+			expected.put(k, "v" + k);
+			assertEquals(max ? expected.pollLastEntry().getValue() : expected.pollFirstEntry().getValue(),
+					max ? tree.pollMax() : tree.pollMin());
+			near(random, tree, expected, k);
+			if (round % 100 == 0) {
+				AVLTreeTest.assertValid(tree, expected);
+			}
+		}
+		AVLTreeTest.assertValid(tree, expected);
+	}
+
+	@Test
+	void split() {
+		Random random = new Random(19);
+		for (int round = 0; round < 300; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = AVLTreeTest.random(random, expected, random.nextInt(300), KEYS);
+			// x, and a node near it on either side.
+			int x = random.nextInt(KEYS);
+			int last = x + random.nextInt(7) - 3;
+			tree.insert(x, "x");
+			expected.putIfAbsent(x, "x");
+			tree.insert(last, "last");
+			expected.putIfAbsent(last, "last");
+
+			AVLTree[] trees = tree.split(x);
+			TreeMap<Integer, String> smaller = new TreeMap<>(expected.headMap(x));
+			TreeMap<Integer, String> larger = new TreeMap<>(expected.tailMap(x, false));
+			for (int j = 0; j < 20; j++) {
+				near(random, trees[0], smaller, x - 1 - random.nextInt(5));
+				near(random, trees[1], larger, x + 1 + random.nextInt(5));
+			}
+			AVLTreeTest.assertValid(trees[0], smaller);
+			AVLTreeTest.assertValid(trees[1], larger);
+		}
+	}
+
+	@Test
+	void join() {
+		Random random = new Random(20);
+		for (int round = 0; round < 300; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = AVLTreeTest.random(random, expected, random.nextInt(300), KEYS);
+			int x = KEYS + 1;
+			AVLTree t = new AVLTree();
+			TreeMap<Integer, String> other = new TreeMap<>();
+			for (int j = random.nextInt(200); j > 0; j--) {
+				int k = x + 1 + random.nextInt(KEYS);
+				t.insert(k, "t" + k);
+				other.put(k, "t" + k);
+			}
+
+			// the max of the smaller keys and the min of the larger keys are near x.
+			int below = x - 1 - random.nextInt(3);
+			tree.insert(below, "below");
+			expected.putIfAbsent(below, "below");
+			int above = x + 1 + random.nextInt(3);
+			t.insert(above, "above");
+			other.putIfAbsent(above, "above");
+
+			AVLTree joined;
+			if (random.nextBoolean()) {
+				tree.join(tree.new AVLNode(x, "x"), t);
+				joined = tree;
+			}
+			else {
+				t.join(t.new AVLNode(x, "x"), tree);
+				joined = t;
+			}
+			expected.putAll(other);
+			expected.put(x, "x");
+			for (int j = 0; j < 20; j++) {
+				near(random, joined, expected, x + random.nextInt(11) - 5);
+			}
+			AVLTreeTest.assertValid(joined, expected);
+		}
+	}
+
+	@Test
+	void cursorInsert() {
+		Random random = new Random(21);
+		for (int round = 0; round < 100; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = new AVLTree();
+			for (int k = 0; k < 3 * KEYS; k += 3) {
+				tree.insert(k, "v" + k);
+				expected.put(k, "v" + k);
+			}
+			int lo = random.nextInt(3 * KEYS);
+			int hi = lo + random.nextInt(3 * KEYS - lo);
+			boolean descending = random.nextBoolean();
+			Cursor cursor = descending ? tree.descendingIterator(lo, hi) : tree.iterator(lo, hi);
+
+			// next to every key of the cursor, a key is inserted on the side it goes to, and sometimes
+			// a key far away. the cursor continues after the inserted key, so it skips the near keys.
+			Integer current = descending ? expected.floorKey(hi) : expected.ceilingKey(lo);
+			while (cursor.hasNext()) {
+				int k = cursor.nextInt();
+				assertEquals(current, k);
+				int key = descending ? k - 1 : k + 1;
+				if (random.nextInt(10) == 0) {
+					key = random.nextInt(3 * KEYS);
+				}
+				assertEquals(expected.containsKey(key), cursor.insert(key, "n" + key) == -1, "insert " + key);
+				if (!expected.containsKey(key)) {
+					expected.put(key, "n" + key);
+					k = key;
+				}
+				current = descending ? expected.lowerKey(k) : expected.higherKey(k);
+				if (current != null && (current < lo || current > hi)) {
+					current = null;
+				}
+			}
+			assertNull(current);
+
+			// insert and delete after the cursor.
+			for (int j = 0; j < 50; j++) {
+				near(random, tree, expected, random.nextInt(3 * KEYS));
+			}
+			AVLTreeTest.assertValid(tree, expected);
+		}
+	}
+
+	@Test
+	void appendAndPrepend() {
+		Random random = new Random(22);
+		AVLTree tree = new AVLTree();
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		int max = 0;
+		int min = 0;
+		for (int j = 0; j < 5_000; j++) {
+			int k = random.nextBoolean() ? ++max : --min;
+			assertTrue(tree.insert(k, "v" + k) >= 0);
+			expected.put(k, "v" + k);
+			// keys outside of the keys of the tree are not found.
+			assertEquals(-1, tree.delete(max + 1));
+			assertEquals(-1, tree.delete(min - 1));
+			if (j % 500 == 0) {
+				AVLTreeTest.assertValid(tree, expected);
+			}
+		}
+		AVLTreeTest.assertValid(tree, expected);
+	}
+
+	@Test
+	void batches() {
+		Random random = new Random(23);
+		for (int round = 0; round < 100; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = AVLTreeTest.random(random, expected, random.nextInt(300), KEYS);
+			int[] keys = new int[random.nextInt(200)];
+			String[] values = new String[keys.length];
+			for (int j = 0; j < keys.length; j++) {
+				keys[j] = random.nextInt(2 * KEYS) - KEYS / 2;
+				values[j] = "b" + keys[j];
+				expected.putIfAbsent(keys[j], values[j]);
+			}
+			tree.insertAll(keys, values);
+			AVLTreeTest.assertValid(tree, expected);
+
+			for (int j = 0; j < keys.length; j++) {
+				keys[j] = random.nextInt(2 * KEYS) - KEYS / 2;
+				expected.remove(keys[j]);
+			}
+			tree.deleteAll(keys);
+			for (int j = 0; j < 20; j++) {
+				near(random, tree, expected, random.nextInt(KEYS));
+			}
+			AVLTreeTest.assertValid(tree, expected);
+		}
+	}
+
+	// inserts or deletes a key near k, and checks the result and that search finds it.
+	private static void near(Random random, AVLTree tree, TreeMap<Integer, String> expected, int k) {
+		int key = k + random.nextInt(5) - 2;
+		if (random.nextBoolean()) {
+			assertEquals(expected.containsKey(key), tree.insert(key, "n" + key) == -1, "insert " + key);
+			expected.putIfAbsent(key, "n" + key);
+		}
+		else {
+			assertEquals(!expected.containsKey(key), tree.delete(key) == -1, "delete " + key);
+			expected.remove(key);
+		}
+		assertEquals(expected.get(key), tree.search(key));
+	}
+}
@@ -0,0 +1,197 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AVLTreeIndexTest
+ *
+ * search on an indexed tree reads only the index, so a key that is missing from it or
+ * points to a node of another tree gives a wrong result. Every key in the range is searched
+ * after split, join and the set operations, which all change the index without insert or delete.
+ */
+class AVLTreeIndexTest {
+	private static final int KEYS = 2_000;
+
+	@Test
+	void insertAndDelete() {
+		Random random = new Random(25);
+		AVLTree tree = new AVLTree();
+		tree.setIndexed(true);
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (int op = 0; op < 20_000; op++) {
+			int k = random.nextInt(KEYS);
+			switch (random.nextInt(4)) {
+			case 0:
+			case 1:
+				assertEquals(expected.containsKey(k), tree.insert(k, "v" + k) == -1);
+				expected.putIfAbsent(k, "v" + k);
+				break;
+			case 2:
+				assertEquals(!expected.containsKey(k), tree.delete(k) == -1);
+				expected.remove(k);
+				break;
+			default:
+				if (random.nextBoolean()) {
+					assertEquals(expected.isEmpty() ? null : expected.pollFirstEntry().getValue(), tree.pollMin());
+				}
+				else {
+					assertEquals(expected.isEmpty() ? null : expected.pollLastEntry().getValue(), tree.pollMax());
+				}
+			}
+			if (op % 500 == 0) {
+				assertSearch(tree, expected);
+			}
+		}
+		assertTrue(tree.isIndexed());
+		assertSearch(tree, expected);
+	}
+
+	@Test
+	void split() {
+		Random random = new Random(26);
+		for (int round = 0; round < 100; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = AVLTreeTest.random(random, expected, 1 + random.nextInt(500), KEYS);
+			tree.setIndexed(true);
+			List<Integer> keys = new ArrayList<>(expected.keySet());
+			// near the ends, so the smaller half is the left one or the right one.
+			int x = keys.get(random.nextBoolean() ? random.nextInt(Math.min(5, keys.size()))
+					: keys.size() - 1 - random.nextInt(Math.min(5, keys.size())));
+			if (random.nextBoolean()) {
+				x = keys.get(random.nextInt(keys.size()));
+			}
+
+			AVLTree[] trees = tree.split(x);
+			TreeMap<Integer, String> smaller = new TreeMap<>(expected.headMap(x));
+			TreeMap<Integer, String> larger = new TreeMap<>(expected.tailMap(x, false));
+			assertTrue(trees[0].isIndexed());
+			assertTrue(trees[1].isIndexed());
+			assertSearch(trees[0], smaller);
+			assertSearch(trees[1], larger);
+
+			// the halves keep their indices through insert and delete.
+			change(random, trees[0], smaller);
+			change(random, trees[1], larger);
+			assertSearch(trees[0], smaller);
+			assertSearch(trees[1], larger);
+		}
+	}
+
+	@Test
+	void join() {
+		Random random = new Random(27);
+		for (int round = 0; round < 200; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			TreeMap<Integer, String> other = new TreeMap<>();
+			AVLTree tree = AVLTreeTest.random(random, expected, random.nextInt(300), KEYS);
+			AVLTree t = new AVLTree();
+			int x = (expected.isEmpty() ? 0 : expected.lastKey()) + 1 + random.nextInt(3);
+			for (int j = random.nextInt(300); j > 0; j--) {
+				int k = x + 1 + random.nextInt(KEYS);
+				t.insert(k, "t" + k);
+				other.put(k, "t" + k);
+			}
+			boolean treeIndexed = random.nextInt(4) != 0;
+			boolean tIndexed = random.nextBoolean();
+			tree.setIndexed(treeIndexed);
+			t.setIndexed(tIndexed);
+
+			// the smaller keys are in tree or in t.
+			AVLTree joined;
+			if (random.nextBoolean()) {
+				tree.join(tree.new AVLNode(x, "x"), t);
+				joined = tree;
+			}
+			else {
+				t.join(t.new AVLNode(x, "x"), tree);
+				joined = t;
+				treeIndexed = tIndexed;
+			}
+			expected.putAll(other);
+			expected.put(x, "x");
+			assertEquals(treeIndexed, joined.isIndexed());
+			assertSearch(joined, expected);
+
+			change(random, joined, expected);
+			assertSearch(joined, expected);
+		}
+	}
+
+	@Test
+	void setOperations() {
+		Random random = new Random(28);
+		for (int round = 0; round < 30; round++) {
+			for (int operation = 0; operation < 3; operation++) {
+				int n = round < 20 ? random.nextInt(300) : 6_000;
+				TreeMap<Integer, String> expected = new TreeMap<>();
+				TreeMap<Integer, String> other = new TreeMap<>();
+				AVLTree tree = AVLTreeTest.random(random, expected, n, KEYS);
+				AVLTree t = AVLTreeTest.random(random, other, n, KEYS);
+				tree.setIndexed(true);
+				t.setIndexed(random.nextBoolean());
+				if (operation == 0) {
+					tree.union(t);
+					other.forEach(expected::putIfAbsent);
+				}
+				else if (operation == 1) {
+					tree.intersection(t);
+					expected.keySet().retainAll(other.keySet());
+				}
+				else {
+					tree.difference(t);
+					expected.keySet().removeAll(other.keySet());
+				}
+				assertTrue(tree.isIndexed());
+				assertSearch(tree, expected);
+				change(random, tree, expected);
+				assertSearch(tree, expected);
+			}
+		}
+	}
+
+	@Test
+	void turnedOff() {
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		AVLTree tree = AVLTreeTest.random(new Random(29), expected, 500, KEYS);
+		tree.setIndexed(true);
+		tree.setIndexed(false);
+		assertFalse(tree.isIndexed());
+		tree.insert(KEYS + 1, "new");
+		expected.put(KEYS + 1, "new");
+		tree.setIndexed(true);
+		assertTrue(tree.isIndexed());
+		assertSearch(tree, expected);
+	}
+
+	// a few random inserts and deletes.
+	private static void change(Random random, AVLTree tree, TreeMap<Integer, String> expected) {
+		for (int j = 0; j < 50; j++) {
+			int k = random.nextInt(3 * KEYS);
+			if (random.nextBoolean()) {
+				assertEquals(expected.containsKey(k), tree.insert(k, "c" + k) == -1);
+				expected.putIfAbsent(k, "c" + k);
+			}
+			else {
+				assertEquals(!expected.containsKey(k), tree.delete(k) == -1);
+				expected.remove(k);
+			}
+		}
+	}
+
+	// every key in the range is searched, and the tree is checked like in AVLTreeTest.
+	private static void assertSearch(AVLTree tree, TreeMap<Integer, String> expected) {
+		for (int k = -1; k <= 3 * KEYS + 1; k++) {
+			assertEquals(expected.get(k), tree.search(k), "search " + k);
+		}
+		AVLTreeTest.assertValid(tree, expected);
+	}
+}
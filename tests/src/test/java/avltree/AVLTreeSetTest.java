@@ -0,0 +1,106 @@
+package avltree;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AVLTreeSetTest
+ *
+ * union, intersection and difference are compared with a TreeMap, on small trees that
+ * are computed in one task and on trees larger than the fork threshold (4096 items),
+ * whose halves are computed in parallel. The result is checked like in AVLTreeTest.
+ */
+class AVLTreeSetTest {
+	private static final int UNION = 0;
+	private static final int INTERSECTION = 1;
+	private static final int DIFFERENCE = 2;
+
+	@Test
+	void smallTrees() {
+		Random random = new Random(9);
+		for (int round = 0; round < 300; round++) {
+			int n = random.nextInt(100);
+			int m = random.nextInt(100);
+			for (int operation = UNION; operation <= DIFFERENCE; operation++) {
+				compare(random, operation, n, m, 200);
+			}
+		}
+	}
+
+	@Test
+	void largeTrees() {
+		Random random = new Random(10);
+		for (int round = 0; round < 3; round++) {
+			for (int operation = UNION; operation <= DIFFERENCE; operation++) {
+				// half of the keys of each tree are in the other one.
+				compare(random, operation, 20_000, 12_000, 40_000);
+			}
+		}
+	}
+
+	@Test
+	void largeAndSmallTree() {
+		Random random = new Random(11);
+		for (int operation = UNION; operation <= DIFFERENCE; operation++) {
+			compare(random, operation, 30_000, 10, 60_000);
+			compare(random, operation, 10, 30_000, 60_000);
+		}
+	}
+
+	@Test
+	void disjointTrees() {
+		for (int operation = UNION; operation <= DIFFERENCE; operation++) {
+			AVLTree tree = new AVLTree();
+			AVLTree t = new AVLTree();
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			TreeMap<Integer, String> other = new TreeMap<>();
+			for (int k = 0; k < 10_000; k++) {
+				tree.insert(k, "a" + k);
+				expected.put(k, "a" + k);
+				t.insert(k + 10_000, "b" + k);
+				other.put(k + 10_000, "b" + k);
+			}
+			apply(operation, tree, t, expected, other);
+			AVLTreeTest.assertValid(tree, expected);
+		}
+	}
+
+	// runs the operation on random trees of about n and m items, with keys in [0, keys).
+	private static void compare(Random random, int operation, int n, int m, int keys) {
+		AVLTree tree = new AVLTree();
+		AVLTree t = new AVLTree();
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		TreeMap<Integer, String> other = new TreeMap<>();
+		for (int j = 0; j < n; j++) {
+			int k = random.nextInt(keys);
+			tree.insert(k, "a" + k);
+			expected.put(k, "a" + k);
+		}
+		for (int j = 0; j < m; j++) {
+			int k = random.nextInt(keys);
+			t.insert(k, "b" + k);
+			other.put(k, "b" + k);
+		}
+		apply(operation, tree, t, expected, other);
+		AVLTreeTest.assertValid(tree, expected);
+	}
+
+	private static void apply(int operation, AVLTree tree, AVLTree t, TreeMap<Integer, String> expected,
+			TreeMap<Integer, String> other) {
+		if (operation == UNION) {
+			tree.union(t);
+			// the info of the tree is kept for a key in both trees.
+			other.forEach(expected::putIfAbsent);
+		}
+		else if (operation == INTERSECTION) {
+			tree.intersection(t);
+			expected.keySet().retainAll(other.keySet());
+		}
+		else {
+			tree.difference(t);
+			expected.keySet().removeAll(other.keySet());
+		}
+	}
+}
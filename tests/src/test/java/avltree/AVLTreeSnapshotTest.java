@@ -0,0 +1,175 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * AVLTreeSnapshotTest
+ *
+ * The corrupted files are written by save() and changed in place, or written by hand
+ * in the same format: magic, version, n, the length of the key section, the key deltas
+ * from Integer.MIN_VALUE and the infos, all numbers after the header as varints.
+ */
+class AVLTreeSnapshotTest {
+	private static final int HEADER = 3 * Integer.BYTES + Long.BYTES;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void roundTrip() throws IOException {
+		Random random = new Random(19);
+		AVLTree tree = new AVLTree();
+		tree.insert(Integer.MIN_VALUE, "min");
+		tree.insert(Integer.MAX_VALUE, null);
+		tree.insert(0, "");
+		for (int i = 0; i < 5_000; i++) {
+			int k = random.nextInt();
+			tree.insert(k, random.nextBoolean() ? null : "v" + k + "é");
+		}
+		Path file = this.directory.resolve("tree");
+		tree.save(file);
+
+		AVLTree loaded = AVLTree.load(file);
+		assertEquals(tree.size(), loaded.size());
+		assertArrayEquals(tree.keysToArray(), loaded.keysToArray());
+		assertArrayEquals(tree.infoToArray(), loaded.infoToArray());
+		assertEquals("min", loaded.search(Integer.MIN_VALUE));
+	}
+
+	@Test
+	void roundTripOfAnEmptyTree() throws IOException {
+		Path file = this.directory.resolve("tree");
+		new AVLTree().save(file);
+		assertEquals(0, AVLTree.load(file).size());
+	}
+
+	@Test
+	void rejectsATruncatedFile() throws IOException {
+		Path file = saved();
+		long complete = Files.size(file);
+		for (long length : new long[] {0, HEADER - 1, HEADER + 3, complete - 1}) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(length);
+			}
+			assertThrows(IOException.class, () -> AVLTree.load(file), "length " + length);
+		}
+	}
+
+	@Test
+	void rejectsTrailingBytes() throws IOException {
+		Path file = saved();
+		Files.write(file, new byte[] {0}, StandardOpenOption.APPEND);
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+	}
+
+	@Test
+	void rejectsABadItemCount() throws IOException {
+		Path file = saved();
+		for (int n : new int[] {-1, 5, Integer.MAX_VALUE - 8, Integer.MAX_VALUE}) {
+			patch(file, 2 * Integer.BYTES, ByteBuffer.allocate(Integer.BYTES).putInt(0, n));
+			assertThrows(IOException.class, () -> AVLTree.load(file), "n " + n);
+		}
+	}
+
+	@Test
+	void rejectsABadKeySectionLength() throws IOException {
+		Path file = saved();
+		// the key section of saved() is 5 + 3 bytes.
+		for (long keyBytes : new long[] {-1, 3, 7, 9, Long.MAX_VALUE}) {
+			patch(file, 3 * Integer.BYTES, ByteBuffer.allocate(Long.BYTES).putLong(0, keyBytes));
+			assertThrows(IOException.class, () -> AVLTree.load(file), "keyBytes " + keyBytes);
+		}
+	}
+
+	@Test
+	void rejectsAZeroDelta() throws IOException {
+		Path file = saved();
+		// the first delta takes 5 bytes, the second delta is 10.
+		patch(file, HEADER + 5, ByteBuffer.wrap(new byte[] {0}));
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+	}
+
+	@Test
+	void acceptsAZeroFirstDelta() throws IOException {
+		Path file = this.directory.resolve("tree");
+		write(file, 1, new long[] {0}, 1);
+		assertArrayEquals(new int[] {Integer.MIN_VALUE}, AVLTree.load(file).keysToArray());
+	}
+
+	@Test
+	void rejectsAnOverflowingDelta() throws IOException {
+		Path file = this.directory.resolve("tree");
+		// Integer.MAX_VALUE, then one more.
+		write(file, 2, new long[] {0xFFFF_FFFFL, 1}, 6);
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+
+		write(file, 1, new long[] {0x1_0000_0000L}, 5);
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+	}
+
+	@Test
+	void rejectsAnInfoLongerThanTheFile() throws IOException {
+		Path file = this.directory.resolve("tree");
+		write(file, 1, new long[] {5}, 1, 1000);
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+
+		// a length that is negative as an int.
+		write(file, 1, new long[] {5}, 1, 0x1_0000_0000L);
+		assertThrows(IOException.class, () -> AVLTree.load(file));
+	}
+
+	// a snapshot of the keys 0, 10, 20 and 30.
+	private Path saved() throws IOException {
+		AVLTree tree = new AVLTree();
+		for (int k = 0; k <= 30; k += 10) {
+			tree.insert(k, "v" + k);
+		}
+		Path file = this.directory.resolve("tree");
+		tree.save(file);
+		return file;
+	}
+
+	private static void patch(Path file, long position, ByteBuffer bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(bytes.rewind(), position);
+		}
+	}
+
+	// writes a snapshot with the given deltas and info lengths (as written, length + 1), the infos are zeros.
+	private static void write(Path file, int n, long[] deltas, long keyBytes, long... infos) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+		buffer.putInt(0x41564C54).putInt(1).putInt(n).putLong(keyBytes);
+		for (long delta : deltas) {
+			putVarint(buffer, delta);
+		}
+		for (int i = 0; i < n; i++) {
+			putVarint(buffer, i < infos.length ? infos[i] : 0);
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void putVarint(ByteBuffer buffer, long value) {
+		while (value >= 0x80) {
+			buffer.put((byte) (value | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+}
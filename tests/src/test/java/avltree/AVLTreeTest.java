@@ -0,0 +1,293 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import avltree.AVLTree.Augmentation;
+import avltree.AVLTree.IAVLNode;
+
+/**
+ * AVLTreeTest
+ *
+ * After random operations the tree is walked from getRoot(), and its parent links, heights,
+ * balance and sizes are checked. rank, select, min and max are compared with a TreeMap.
+ * Trees with different augmentations can not be joined or merged.
+ */
+class AVLTreeTest {
+	private static final int KEYS = 1_000;
+
+	@Test
+	void keepsTheInvariants() {
+		Random random = new Random(2);
+		AVLTree tree = new AVLTree();
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (int op = 0; op < 20_000; op++) {
+			int k = random.nextInt(KEYS) - KEYS / 2;
+			switch (random.nextInt(4)) {
+			case 0:
+			case 1:
+				assertEquals(expected.containsKey(k), tree.insert(k, "v" + k) == -1);
+				expected.putIfAbsent(k, "v" + k);
+				break;
+			case 2:
+				assertEquals(!expected.containsKey(k), tree.delete(k) == -1);
+				expected.remove(k);
+				break;
+			default:
+				if (random.nextBoolean()) {
+					assertEquals(expected.isEmpty() ? null : expected.pollFirstEntry().getValue(), tree.pollMin());
+				}
+				else {
+					assertEquals(expected.isEmpty() ? null : expected.pollLastEntry().getValue(), tree.pollMax());
+				}
+			}
+			if (op % 100 == 0) {
+				assertValid(tree, expected);
+			}
+		}
+		assertValid(tree, expected);
+	}
+
+	@Test
+	void emptyTree() {
+		AVLTree tree = new AVLTree();
+		assertTrue(tree.empty());
+		assertNull(tree.min());
+		assertNull(tree.max());
+		assertNull(tree.pollMin());
+		assertNull(tree.pollMax());
+		assertEquals(0, tree.rank(5));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(1));
+		assertValid(tree, new TreeMap<>());
+	}
+
+	@Test
+	void selectOutOfRange() {
+		AVLTree tree = new AVLTree();
+		for (int k = 0; k < 10; k++) {
+			tree.insert(k, null);
+		}
+		// -1 is the key of the virtual node, and a key that could be in the tree.
+		tree.insert(-1, null);
+		assertEquals(-1, tree.select(1));
+		assertEquals(9, tree.select(11));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(12));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-5));
+	}
+
+	@Test
+	void splitAndJoinReuseTheNodes() {
+		Random random = new Random(3);
+		for (int round = 0; round < 200; round++) {
+			TreeMap<Integer, String> expected = new TreeMap<>();
+			AVLTree tree = random(random, expected, 1 + random.nextInt(300), KEYS);
+			Set<IAVLNode> nodes = nodes(tree);
+			List<Integer> keys = new ArrayList<>(expected.keySet());
+			int x = keys.get(random.nextInt(keys.size()));
+			IAVLNode xNode = find(tree, x);
+
+			AVLTree[] trees = tree.split(x);
+			TreeMap<Integer, String> smaller = new TreeMap<>(expected.headMap(x));
+			TreeMap<Integer, String> larger = new TreeMap<>(expected.tailMap(x, false));
+			assertValid(trees[0], smaller);
+			assertValid(trees[1], larger);
+
+			// the nodes of t1 and t2 are the nodes of the tree, without the node of x.
+			Set<IAVLNode> splitNodes = nodes(trees[0]);
+			splitNodes.addAll(nodes(trees[1]));
+			nodes.remove(xNode);
+			assertEquals(nodes, splitNodes);
+
+			// the halves are joined back with a new node, which is the only node added.
+			IAVLNode joinNode = trees[0].new AVLNode(x, "w" + x);
+			int expectedCost = Math.abs(trees[0].getRank() - trees[1].getRank()) + 1;
+			AVLTree joined;
+			if (random.nextBoolean()) {
+				assertEquals(expectedCost, trees[0].join(joinNode, trees[1]));
+				joined = trees[0];
+			}
+			else {
+				assertEquals(expectedCost, trees[1].join(joinNode, trees[0]));
+				joined = trees[1];
+			}
+			expected.put(x, "w" + x);
+			assertValid(joined, expected);
+			nodes.add(joinNode);
+			assertEquals(nodes, nodes(joined));
+		}
+	}
+
+	@Test
+	void joinWithEmptyTrees() {
+		AVLTree tree = new AVLTree();
+		AVLTree empty = new AVLTree();
+		assertEquals(1, tree.join(tree.new AVLNode(5, "five"), empty));
+		assertValid(tree, new TreeMap<>(Map.of(5, "five")));
+
+		for (int k = 6; k < 40; k++) {
+			AVLTree other = new AVLTree();
+			tree.join(tree.new AVLNode(k, "v" + k), other);
+		}
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		expected.put(5, "five");
+		for (int k = 6; k < 40; k++) {
+			expected.put(k, "v" + k);
+		}
+		assertValid(tree, expected);
+
+		AVLTree smaller = new AVLTree();
+		smaller.join(smaller.new AVLNode(0, "zero"), tree);
+		expected.put(0, "zero");
+		assertValid(smaller, expected);
+	}
+
+	@Test
+	void differentAugmentations() {
+		Augmentation<Long> sum = new Sum();
+		AVLTree tree = new AVLTree(sum);
+		AVLTree same = new AVLTree(sum);
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (int k = 0; k < 10; k++) {
+			tree.insert(k, "v" + k);
+			expected.put(k, "v" + k);
+			same.insert(k + 20, "s" + k);
+		}
+
+		// the trees are not changed by an operation that throws.
+		for (AVLTree other : List.of(new AVLTree(new Sum()), new AVLTree())) {
+			other.insert(30, "o");
+			assertThrows(IllegalArgumentException.class, () -> tree.join(tree.new AVLNode(15, "x"), other));
+			assertThrows(IllegalArgumentException.class, () -> tree.union(other));
+			assertThrows(IllegalArgumentException.class, () -> tree.intersection(other));
+			assertThrows(IllegalArgumentException.class, () -> tree.difference(other));
+			assertValid(tree, expected);
+			assertEquals("o", other.search(30));
+		}
+		assertThrows(IllegalArgumentException.class, () -> new AVLTree().union(tree));
+		assertEquals(45L, (long) tree.aggregate(0, 100));
+
+		tree.join(tree.new AVLNode(15, "x"), same);
+		assertEquals(45L + 15 + 245, (long) tree.aggregate(0, 100));
+	}
+
+	// the sum of the keys.
+	private static final class Sum implements Augmentation<Long> {
+		public Long identity() {
+			return 0L;
+		}
+
+		public Long of(int key, String info) {
+			return (long) key;
+		}
+
+		public Long combine(Long left, Long right) {
+			return left + right;
+		}
+	}
+
+	// checks the structure of the tree, and compares its items, rank, select, min and max with expected.
+	static void assertValid(AVLTree tree, TreeMap<Integer, String> expected) {
+		IAVLNode root = tree.getRoot();
+		if (root.isRealNode()) {
+			assertNull(root.getParent());
+		}
+		check(root, null, null);
+		assertEquals(expected.size(), tree.size());
+		assertEquals(expected.size(), root.getSize());
+		assertEquals(expected.isEmpty(), tree.empty());
+
+		int[] keys = expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+		assertArrayEquals(keys, tree.keysToArray());
+		assertArrayEquals(expected.values().toArray(new String[0]), tree.infoToArray());
+
+		assertEquals(expected.isEmpty() ? null : expected.firstEntry().getValue(), tree.min());
+		assertEquals(expected.isEmpty() ? null : expected.lastEntry().getValue(), tree.max());
+
+		for (int j = 0; j < keys.length; j++) {
+			assertEquals(keys[j], tree.select(j + 1));
+			assertEquals(j + 1, tree.rank(keys[j]));
+			// a key that is not in the tree has the rank of the largest key below it.
+			if (j + 1 == keys.length || keys[j + 1] > keys[j] + 1) {
+				assertEquals(j + 1, tree.rank(keys[j] + 1));
+			}
+		}
+		if (keys.length > 0) {
+			assertEquals(0, tree.rank(keys[0] - 1));
+		}
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(keys.length + 1));
+	}
+
+	// a tree of n random inserts with keys in [0, keys), whose items are also put in expected.
+	static AVLTree random(Random random, TreeMap<Integer, String> expected, int n, int keys) {
+		AVLTree tree = new AVLTree();
+		for (int j = 0; j < n; j++) {
+			int k = random.nextInt(keys);
+			tree.insert(k, "v" + k);
+			expected.put(k, "v" + k);
+		}
+		return tree;
+	}
+
+	// checks the subtree of x, with keys in (low, high), and returns its height.
+	private static int check(IAVLNode x, Integer low, Integer high) {
+		if (!x.isRealNode()) {
+			assertEquals(-1, x.getHeight());
+			assertEquals(0, x.getSize());
+			return -1;
+		}
+		assertTrue(low == null || x.getKey() > low, "order");
+		assertTrue(high == null || x.getKey() < high, "order");
+		if (x.getLeft().isRealNode()) {
+			assertSame(x, x.getLeft().getParent(), "parent of " + x.getLeft().getKey());
+		}
+		if (x.getRight().isRealNode()) {
+			assertSame(x, x.getRight().getParent(), "parent of " + x.getRight().getKey());
+		}
+		int left = check(x.getLeft(), low, x.getKey());
+		int right = check(x.getRight(), x.getKey(), high);
+		assertTrue(Math.abs(left - right) <= 1, "balance of " + x.getKey());
+		assertEquals(Math.max(left, right) + 1, x.getHeight(), "height of " + x.getKey());
+		assertEquals(x.getLeft().getSize() + x.getRight().getSize() + 1, x.getSize(), "size of " + x.getKey());
+		return x.getHeight();
+	}
+
+	// the real nodes of the tree, by identity.
+	private static Set<IAVLNode> nodes(AVLTree tree) {
+		Set<IAVLNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<IAVLNode> stack = new ArrayList<>();
+		stack.add(tree.getRoot());
+		while (!stack.isEmpty()) {
+			IAVLNode x = stack.remove(stack.size() - 1);
+			if (x.isRealNode()) {
+				nodes.add(x);
+				stack.add(x.getLeft());
+				stack.add(x.getRight());
+			}
+		}
+		return nodes;
+	}
+
+	private static IAVLNode find(AVLTree tree, int k) {
+		IAVLNode x = tree.getRoot();
+		while (x.getKey() != k) {
+			x = k < x.getKey() ? x.getLeft() : x.getRight();
+		}
+		return x;
+	}
+}
@@ -0,0 +1,213 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import avltree.AVLTree.DurableAVLTree;
+import avltree.AVLTree.DurableAVLTree.SyncMode;
+
+/**
+ * DurableAVLTreeTest
+ *
+ * A crash is simulated by changing the files of a closed tree, like a write that
+ * reached the disk only in part, and opening the directory again.
+ */
+class DurableAVLTreeTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	void replaysTheLog() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		for (int k = 0; k < 100; k++) {
+			tree.insert(k, "v" + k);
+		}
+		tree.delete(50);
+		tree.close();
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertEquals(99, reopened.size());
+		assertNull(reopened.search(50));
+		assertEquals("v99", reopened.search(99));
+		reopened.close();
+	}
+
+	@Test
+	void replaysSplitAndJoin() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		for (int k = 0; k < 100; k++) {
+			tree.insert(k, "v" + k);
+		}
+		// the keys smaller than 60 stay durable, and the larger ones are joined back without 70.
+		AVLTree larger = tree.split(60);
+		assertArrayEquals(range(61, 100), larger.keysToArray());
+		tree.close();
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertArrayEquals(range(0, 60), reopened.keysToArray());
+		larger.delete(70);
+		reopened.join(60, "w60", larger);
+		reopened.close();
+
+		DurableAVLTree again = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertEquals(99, again.size());
+		assertNull(again.search(70));
+		assertEquals("w60", again.search(60));
+		assertEquals("v99", again.search(99));
+		again.close();
+	}
+
+	@Test
+	void doesNotLogARejectedSplitOrJoin() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		for (int k = 0; k < 10; k++) {
+			tree.insert(2 * k, "v" + k);
+		}
+		assertThrows(IllegalArgumentException.class, () -> tree.split(5));
+		AVLTree t = new AVLTree();
+		t.insert(7, "t");
+		assertThrows(IllegalArgumentException.class, () -> tree.join(30, "x", t));
+		assertThrows(IllegalArgumentException.class, () -> tree.join(5, "x", new AVLTree()));
+		assertEquals(10, tree.size());
+		assertEquals("t", t.search(7));
+		tree.close();
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertEquals(10, reopened.size());
+		assertNull(reopened.search(30));
+		reopened.close();
+	}
+
+	@Test
+	void dropsATornRecordAtTheEnd() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		tree.insert(1, "one");
+		tree.insert(2, "two");
+		tree.close();
+
+		// the last record reached the disk without its last 3 bytes.
+		Path log = this.directory.resolve("wal-0");
+		long complete = Files.size(log);
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.truncate(complete - 3);
+		}
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertArrayEquals(new int[] {1}, reopened.keysToArray());
+
+		// the torn bytes were removed, so a new record follows the last complete one.
+		reopened.insert(3, "three");
+		reopened.close();
+		DurableAVLTree again = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertArrayEquals(new int[] {1, 3}, again.keysToArray());
+		again.close();
+	}
+
+	@Test
+	void dropsARecordWithABadChecksum() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		tree.insert(1, "one");
+		tree.insert(2, "two");
+		tree.close();
+
+		// change the last byte of the info of the last record.
+		Path log = this.directory.resolve("wal-0");
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {'x'}), channel.size() - 1);
+		}
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertArrayEquals(new int[] {1}, reopened.keysToArray());
+		reopened.close();
+	}
+
+	@Test
+	void rotatesCheckpointsAndLogs() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.WRITE, 1_000);
+		for (int k = 0; k < 2_000; k++) {
+			tree.insert(k, "v" + k);
+		}
+		for (int k = 0; k < 2_000; k += 2) {
+			tree.delete(k);
+		}
+		tree.close();
+
+		// only the files of the latest epoch are kept.
+		List<String> files = files();
+		assertEquals(2, files.size(), files.toString());
+		String epoch = files.get(0).substring("checkpoint-".length());
+		assertTrue(Long.parseLong(epoch) > 1);
+		assertEquals("wal-" + epoch, files.get(1));
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.WRITE, 1_000);
+		assertEquals(1_000, reopened.size());
+		assertEquals("v1999", reopened.search(1_999));
+		assertNull(reopened.search(1_998));
+		reopened.close();
+	}
+
+	@Test
+	void ignoresTheFilesOfOlderEpochs() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		tree.insert(1, "one");
+		tree.checkpoint();
+		tree.insert(2, "two");
+		tree.close();
+
+		// a crash after the rename of checkpoint-1 and before the old files were deleted.
+		Files.write(this.directory.resolve("checkpoint-0"), new byte[] {1, 2, 3});
+		Files.write(this.directory.resolve("wal-0"), new byte[] {4, 5, 6});
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.FORCE, 0);
+		assertArrayEquals(new int[] {1, 2}, reopened.keysToArray());
+		reopened.close();
+		assertEquals(List.of("checkpoint-1", "wal-1"), files());
+	}
+
+	@Test
+	void checkpointsWithoutWritesInModeNone() throws IOException {
+		DurableAVLTree tree = DurableAVLTree.open(this.directory, SyncMode.NONE, 1_000);
+		for (int k = 0; k < 1_000; k++) {
+			tree.insert(k, "v" + k);
+		}
+
+		// the pending records passed checkpointBytes, so they were saved in a checkpoint.
+		assertFalse(Files.exists(this.directory.resolve("checkpoint-0")));
+		assertTrue(files().get(0).startsWith("checkpoint-"), files().toString());
+		tree.close();
+
+		DurableAVLTree reopened = DurableAVLTree.open(this.directory, SyncMode.NONE, 1_000);
+		assertEquals(1_000, reopened.size());
+		reopened.close();
+	}
+
+	// the keys in [from, to).
+	private static int[] range(int from, int to) {
+		return IntStream.range(from, to).toArray();
+	}
+
+	// the names of the files in the directory, sorted.
+	private List<String> files() throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+}
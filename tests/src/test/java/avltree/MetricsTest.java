@@ -0,0 +1,100 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import avltree.AVLTree.Cursor;
+import avltree.AVLTree.Metrics;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * MetricsTest
+ *
+ * The counters are compared with the results of the operations: insert counts a promotion,
+ * a rotation and a demotion as 1 and a double rotation as 2, and delete counts a demotion as 1,
+ * a rotation as 3 and a double rotation as 5. The tests run with -Davltree.metrics=true (see the pom).
+ */
+class MetricsTest {
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	void reset() {
+		assertTrue(Metrics.enabled(), "run with -Davltree.metrics=true");
+		Metrics.reset();
+	}
+
+	@Test
+	void countsBatches() {
+		Random random = new Random(23);
+		AVLTree tree = new AVLTree();
+		int[] keys = random.ints(20_000, 0, 50_000).toArray();
+		String[] values = new String[keys.length];
+		int inserted = tree.insertAll(keys, values);
+		assertEquals(inserted, Metrics.promotions() + Metrics.rotations() + Metrics.demotions()
+				+ 2 * Metrics.doubleRotations());
+		assertEquals(1, Metrics.batchLatencies().count());
+
+		Metrics.reset();
+		int deleted = tree.deleteAll(random.ints(20_000, 0, 50_000).toArray());
+		assertEquals(deleted, Metrics.demotions() + 3 * Metrics.rotations() + 5 * Metrics.doubleRotations());
+		assertEquals(1, Metrics.batchLatencies().count());
+	}
+
+	@Test
+	void countsPollsAndCursorInserts() {
+		AVLTree tree = new AVLTree();
+		for (int k = 0; k < 1_000; k += 2) {
+			tree.insert(k, null);
+		}
+		Metrics.reset();
+		Cursor cursor = tree.iterator(0, 1_000);
+		int counter = 0;
+		while (cursor.hasNext()) {
+			counter += cursor.insert(cursor.nextInt() + 1, null);
+		}
+		assertEquals(1_000, tree.size());
+		assertEquals(counter, Metrics.promotions() + Metrics.rotations() + Metrics.demotions()
+				+ 2 * Metrics.doubleRotations());
+
+		// the tree gets lower, so its nodes are demoted.
+		Metrics.reset();
+		while (!tree.empty()) {
+			tree.pollMin();
+			tree.pollMax();
+		}
+		assertTrue(Metrics.demotions() > 0);
+	}
+
+	@Test
+	void recordsSlowBatches() throws IOException {
+		Path file = this.directory.resolve("avltree.jfr");
+		AVLTree tree = new AVLTree();
+		int[] keys = new Random(24).ints(200_000).toArray();
+		try (Recording recording = new Recording()) {
+			recording.enable("avltree.SlowOperation").withThreshold(Duration.ZERO);
+			recording.start();
+			tree.insertAll(keys, new String[keys.length]);
+			tree.deleteAll(keys);
+			recording.stop();
+			recording.dump(file);
+		}
+		// a batch of 200000 items takes more than the 1ms default of -Davltree.slowNanos.
+		List<String> operations = RecordingFile.readAllEvents(file).stream()
+				.map(event -> event.getString("operation")).collect(Collectors.toList());
+		assertTrue(operations.contains("insertAll"), operations.toString());
+		assertTrue(operations.contains("deleteAll"), operations.toString());
+	}
+}
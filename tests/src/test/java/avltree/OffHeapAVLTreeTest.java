@@ -0,0 +1,71 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import avltree.AVLTree.OffHeapAVLTree;
+
+/**
+ * OffHeapAVLTreeTest
+ *
+ * The tree is mapped from a file, which grows by one chunk of 4MB for every new chunk of nodes
+ * or values, so a node or a value record that is not reused shows as a larger file.
+ */
+class OffHeapAVLTreeTest {
+	private static final int CHUNK_BYTES = 1 << 22;
+	// the length of the longest value, a chunk without the header of its record.
+	private static final int MAX_VALUE = CHUNK_BYTES - 8;
+	// the nodes in a chunk of nodes, with the virtual node.
+	private static final int CHUNK_NODES = CHUNK_BYTES / 32;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reusesTheLongestValues() throws IOException {
+		Path file = this.directory.resolve("tree");
+		OffHeapAVLTree tree = new OffHeapAVLTree(file);
+		String value = "a".repeat(MAX_VALUE);
+		tree.insert(0, value);
+		// a chunk of nodes and a chunk with the value.
+		assertEquals(2L * CHUNK_BYTES, Files.size(file));
+
+		for (int k = 1; k < 10; k++) {
+			assertEquals(0, tree.delete(k - 1));
+			tree.insert(k, value);
+			assertEquals(2L * CHUNK_BYTES, Files.size(file), "insert " + k);
+		}
+		assertEquals(value, tree.search(9));
+		assertEquals(1, tree.size());
+		tree.close();
+	}
+
+	@Test
+	void tooLongValueTakesNoNode() throws IOException {
+		Path file = this.directory.resolve("tree");
+		OffHeapAVLTree tree = new OffHeapAVLTree(file);
+		for (int k = 1; k < CHUNK_NODES; k++) {
+			tree.insert(k, null);
+		}
+		assertEquals(CHUNK_BYTES, Files.size(file));
+
+		// the node of 1 is free, and is not taken by the insert that fails.
+		tree.delete(1);
+		String value = "a".repeat(MAX_VALUE + 1);
+		assertThrows(IllegalArgumentException.class, () -> tree.insert(0, value));
+		tree.insert(0, null);
+		assertEquals(CHUNK_BYTES, Files.size(file));
+		assertEquals(CHUNK_NODES - 1, tree.size());
+		int[] keys = tree.keysToArray();
+		assertEquals(0, keys[0]);
+		assertEquals(2, keys[1]);
+		tree.close();
+	}
+}
@@ -0,0 +1,107 @@
+package avltree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ShardedAVLTreeTest
+ *
+ * Every writer thread owns the keys k with k % THREADS == its number, so the
+ * items of a thread are known exactly while the shards are divided and merged by all of them.
+ */
+class ShardedAVLTreeTest {
+	private static final int THREADS = 8;
+	private static final int OPERATIONS = 50_000;
+	private static final int KEYS = 4_000;
+
+	@Test
+	void rejectsShardsTooSmallToMerge() {
+		assertThrows(IllegalArgumentException.class, () -> new AVLTree.ShardedAVLTree(3));
+		assertEquals(0, new AVLTree.ShardedAVLTree(4).size());
+	}
+
+	@Test
+	void dividesAndMergesShards() {
+		for (boolean fromTheRight : new boolean[] {true, false}) {
+			AVLTree.ShardedAVLTree tree = new AVLTree.ShardedAVLTree(16);
+			for (int k = 0; k < 1_000; k++) {
+				assertTrue(tree.insert(k, "v" + k) >= 0);
+			}
+			assertTrue(tree.shards() > 1_000 / 16);
+			assertEquals(-1, tree.insert(500, "again"));
+
+			// a shard is merged with the smaller of its neighbours when one of its keys is deleted,
+			// which is the one the keys were deleted from, on either side.
+			for (int j = 0; j < 1_000; j++) {
+				int k = fromTheRight ? 999 - j : j;
+				if (k % 100 != 0) {
+					tree.delete(k);
+				}
+			}
+			assertEquals(10, tree.size());
+			assertTrue(tree.shards() < 10, "small neighbouring shards should be merged, shards: " + tree.shards());
+			assertArrayEquals(new int[] {0, 100, 200, 300, 400, 500, 600, 700, 800, 900}, tree.keysToArray());
+			assertEquals("v300", tree.search(300));
+			assertNull(tree.search(301));
+		}
+	}
+
+	@Test
+	void concurrentWritersKeepTheirItems() throws Exception {
+		// a small shard size, so the writers divide and merge shards all the time.
+		AVLTree.ShardedAVLTree tree = new AVLTree.ShardedAVLTree(8);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<TreeMap<Integer, String>>> writers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			writers.add(pool.submit(() -> {
+				Random random = new Random(thread);
+				TreeMap<Integer, String> own = new TreeMap<>();
+				start.await();
+				for (int op = 0; op < OPERATIONS; op++) {
+					int k = random.nextInt(KEYS) * THREADS + thread;
+					if (random.nextInt(3) == 0) {
+						assertEquals(own.remove(k) == null, tree.delete(k) == -1);
+					}
+					else if (random.nextBoolean()) {
+						assertEquals(own.containsKey(k), tree.insert(k, "v" + k) == -1);
+						own.putIfAbsent(k, "v" + k);
+					}
+					else {
+						assertEquals(own.get(k), tree.search(k));
+					}
+				}
+				return own;
+			}));
+		}
+		start.countDown();
+
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (Future<TreeMap<Integer, String>> writer : writers) {
+			expected.putAll(writer.get(2, TimeUnit.MINUTES));
+		}
+		pool.shutdown();
+
+		assertEquals(expected.size(), tree.size());
+		assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), tree.keysToArray());
+		for (int k : expected.keySet()) {
+			assertEquals(expected.get(k), tree.search(k));
+		}
+	}
+}